@@ -0,0 +1,54 @@
+// 对话流压测（k6）：每个虚拟用户使用一个测试账号，循环发起流式对话，统计首字节时间与非200比例
+// 用法（分别以 VIRTUAL_THREADS_ENABLED=false / true 启动同一节点后执行，N 逐步增大）：
+//   k6 run -e BASE_URL=http://localhost:7979/api -e ROLE_ID=1 -e VUS=500 -e TOKENS=tokens.txt scripts/bench/chat-stream.js
+// tokens.txt 每行一个登录令牌，行数不少于 VUS（每个用户+角色只有一个会话，同一会话的轮次会排队）
+import http from 'k6/http';
+import { check } from 'k6';
+import { SharedArray } from 'k6/data';
+import { Rate, Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:7979/api';
+const ROLE_ID = __ENV.ROLE_ID || '1';
+const VUS = parseInt(__ENV.VUS || '100', 10);
+const MESSAGE = __ENV.MESSAGE || '介绍一下你自己';
+
+const tokens = new SharedArray('tokens', () =>
+    open(__ENV.TOKENS || 'tokens.txt').split('\n').map((t) => t.trim()).filter((t) => t.length > 0));
+
+const ttfb = new Trend('chat_ttfb', true);
+const failed = new Rate('chat_failed');
+
+export const options = {
+    scenarios: {
+        streams: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: __ENV.RAMP || '1m', target: VUS },
+                { duration: __ENV.HOLD || '3m', target: VUS },
+                { duration: '30s', target: 0 },
+            ],
+            gracefulRampDown: '2m',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(90)', 'p(99)', 'max'],
+};
+
+export function setup() {
+    if (tokens.length < VUS) {
+        throw new Error(`tokens.txt 只有 ${tokens.length} 个令牌，少于 VUS=${VUS}`);
+    }
+}
+
+export default function () {
+    const token = tokens[(__VU - 1) % tokens.length];
+    const res = http.post(`${BASE_URL}/chat/${ROLE_ID}`, { message: MESSAGE }, {
+        headers: { Authorization: `Bearer ${token}`, Accept: 'text/event-stream' },
+        timeout: '5m',
+        tags: { name: 'chat-stream' },
+    });
+    // k6 读完整个流才返回，waiting 即首字节时间
+    ttfb.add(res.timings.waiting);
+    failed.add(res.status !== 200);
+    check(res, { 'status is 200': (r) => r.status === 200 });
+}
@@ -1,10 +1,23 @@
 package com.tripdog.ai;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.util.StringUtils;
 import com.tripdog.ai.assistant.ChatAssistant;
-import com.tripdog.ai.embedding.RetrieverFactory;
+import com.tripdog.ai.embedding.DocAwareQueryRouter;
 import com.tripdog.ai.mcp.McpClientFactory;
+import com.tripdog.ai.routing.ChatModelRouter;
+import com.tripdog.ai.routing.ModelTier;
+import com.tripdog.ai.role.RoleConfig;
+import com.tripdog.ai.role.RoleConfigCache;
+import com.tripdog.ai.role.RoleConfigChangedEvent;
 import com.tripdog.ai.tool.MyTools;
+import com.tripdog.mapper.RoleMapper;
+import com.tripdog.model.entity.RoleDO;
 import dev.langchain4j.mcp.McpToolProvider;
 import dev.langchain4j.mcp.client.McpClient;
 import dev.langchain4j.model.chat.StreamingChatModel;
@@ -13,48 +26,122 @@ import dev.langchain4j.rag.DefaultRetrievalAugmentor;
 import dev.langchain4j.rag.RetrievalAugmentor;
 import dev.langchain4j.rag.content.aggregator.DefaultContentAggregator;
 import dev.langchain4j.rag.content.injector.DefaultContentInjector;
-import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.service.AiServices;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import static com.tripdog.ai.mcp.McpConstants.WEB_SEARCH;
 import static com.tripdog.common.Constants.INJECT_TEMPLATE;
 
 /**
  * @author: iohw
  * @date: 2025/9/24 22:21
- * @description:
+ * @description: 聊天助手按角色组装一次后复用。AiServices 代理本身无状态：会话记忆按 @MemoryId 隔离，
+ * 检索过滤条件在每次查询时从调用线程的上下文读取，因此同一实例可被多个线程并发使用。
+ * 应用启动完成后为启用中的角色预热。
+ * 配置了轻量模型的角色另有一个使用轻量模型的助手（{@link ModelTier#LIGHT}），与主模型助手共用会话记忆、检索和工具，首次使用时组装。
  */
 @Configuration
 @RequiredArgsConstructor
+@Slf4j
 public class AssistantService {
-    final StreamingChatModel chatLanguageModel;
-    final RetrieverFactory retrieverFactory;
+    final ChatModelRouter chatModelRouter;
+    final DocAwareQueryRouter queryRouter;
     final CustomerChatMemoryProvider chatMemoryProvider;
     final McpClientFactory mcpClientFactory;
+    final RoleMapper roleMapper;
+    final RoleConfigCache roleConfigCache;
+    /** 角色ID -> 聊天助手 */
+    private final Map<Long, ChatAssistant> assistants = new ConcurrentHashMap<>();
+    /** 角色ID -> 使用轻量模型的聊天助手 */
+    private final Map<Long, ChatAssistant> lightAssistants = new ConcurrentHashMap<>();
+    private RetrievalAugmentor retrievalAugmentor;
+    private MyTools tools;
 
-    public ChatAssistant getAssistant() {
-        EmbeddingStoreContentRetriever embeddingStoreContentRetriever = retrieverFactory.getRetriever();
-
-        RetrievalAugmentor retrievalAugmentor = DefaultRetrievalAugmentor.builder()
-            .contentRetriever(embeddingStoreContentRetriever)
+    @PostConstruct
+    void init() {
+        retrievalAugmentor = DefaultRetrievalAugmentor.builder()
+            .queryRouter(queryRouter)
             .contentAggregator(new DefaultContentAggregator())
             .contentInjector(DefaultContentInjector.builder()
                 .promptTemplate(PromptTemplate.from("{{userMessage}}" + INJECT_TEMPLATE + "{{contents}}"))
                 .build())
             .build();
+        tools = new MyTools();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        long start = System.currentTimeMillis();
+        int warmed = 0;
+        try {
+            for (RoleDO role : roleMapper.selectActiveRoles()) {
+                getAssistant(role.getId());
+                warmed++;
+            }
+        } catch (Exception e) {
+            log.warn("预热聊天助手失败，首次请求时再组装", e);
+        }
+        log.info("聊天助手预热完成: roles={}, costMs={}", warmed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 角色配置变化时丢弃对应角色的助手，下次请求重新组装
+     */
+    @EventListener
+    public void onRoleConfigChanged(RoleConfigChangedEvent event) {
+        event.getRoleIds().forEach(assistants::remove);
+        event.getRoleIds().forEach(lightAssistants::remove);
+    }
 
+    public ChatAssistant getAssistant(Long roleId) {
+        return getAssistant(roleId, ModelTier.PRIMARY);
+    }
+
+    public ChatAssistant getAssistant(Long roleId, ModelTier tier) {
+        Map<Long, ChatAssistant> cache = tier == ModelTier.LIGHT ? lightAssistants : assistants;
+        ChatAssistant cached = cache.get(roleId);
+        if (cached != null) {
+            return cached;
+        }
+
+        StreamingChatModel model = modelOf(roleId, tier);
         McpClient mcpClient = mcpClientFactory.getMcpClient(WEB_SEARCH);
-        McpToolProvider toolProvider = McpToolProvider.builder()
+        if (mcpClient == null) {
+            // 联网搜索不可用时本次不带搜索工具，也不缓存，恢复后重新组装
+            log.warn("联网搜索MCP客户端不可用，聊天助手暂不启用搜索工具: roleId={}", roleId);
+            return build(model, null);
+        }
+        ChatAssistant assistant = build(model, McpToolProvider.builder()
             .mcpClients(mcpClient)
-            .build();
+            .build());
+        ChatAssistant previous = cache.putIfAbsent(roleId, assistant);
+        return previous != null ? previous : assistant;
+    }
 
-        return AiServices.builder(ChatAssistant.class)
-            .streamingChatModel(chatLanguageModel)
+    /**
+     * 轻量档位使用角色配置的轻量模型，角色未配置时仍用主模型
+     */
+    private StreamingChatModel modelOf(Long roleId, ModelTier tier) {
+        if (tier == ModelTier.LIGHT) {
+            RoleConfig role = roleConfigCache.get(roleId);
+            if (role != null && StringUtils.hasText(role.getLightModelName())) {
+                return chatModelRouter.getLightModel(role.getLightModelName());
+            }
+        }
+        return chatModelRouter.getModel();
+    }
+
+    private ChatAssistant build(StreamingChatModel model, McpToolProvider toolProvider) {
+        AiServices<ChatAssistant> builder = AiServices.builder(ChatAssistant.class)
+            .streamingChatModel(model)
             .retrievalAugmentor(retrievalAugmentor)
             .chatMemoryProvider(chatMemoryProvider)
-            .tools(new MyTools())
-            .toolProvider(toolProvider)
-            .build();
+            .tools(tools);
+        if (toolProvider != null) {
+            builder.toolProvider(toolProvider);
+        }
+        return builder.build();
     }
 
 }
@@ -1,46 +1,131 @@
 package com.tripdog.ai;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.tripdog.ai.memory.ChatMemoryConfig;
+import com.tripdog.ai.memory.ChatMemoryRegistryConfig;
+import com.tripdog.ai.memory.LocalQwenTokenCountEstimator;
+import com.tripdog.ai.memory.TokenBudgetChatMemory;
+import com.tripdog.ai.role.RoleConfig;
+import com.tripdog.ai.role.RoleConfigCache;
+import com.tripdog.ai.role.RoleConfigChangedEvent;
+import com.tripdog.common.utils.RoleConfigParser;
+import com.tripdog.mapper.ConversationMapper;
+import com.tripdog.model.entity.ConversationDO;
 
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * @author: iohw
  * @date: 2025/9/26 19:05
- * @description:
+ * @description: 会话记忆提供者，按会话ID复用 ChatMemory 实例；
+ * 实例保存在有容量上限、空闲过期的并发缓存中，淘汰后再次访问会重新创建（消息本身在 ChatMemoryStore 中，不会丢失）。
+ * 存活数、淘汰数等以 chat.memory.registry 前缀注册到 Micrometer。
  */
 @Configuration
 @RequiredArgsConstructor
+@Slf4j
 public class CustomerChatMemoryProvider implements ChatMemoryProvider {
     private final ChatMemoryStore memoryStore;
-    private final Integer MAX_MESSAGES = 50;
-    private final Map<String, ChatMemory> map = new HashMap<>();
+    private final LocalQwenTokenCountEstimator tokenCountEstimator;
+    private final ChatMemoryConfig chatMemoryConfig;
+    private final ConversationMapper conversationMapper;
+    private final RoleConfigCache roleConfigCache;
+    private final ChatMemoryRegistryConfig registryConfig;
+    private final MeterRegistry meterRegistry;
+    private Cache<String, RoleMemory> memories;
+
+    @PostConstruct
+    void init() {
+        memories = CacheBuilder.newBuilder()
+            .maximumSize(registryConfig.getMaxMemories())
+            .expireAfterAccess(registryConfig.getExpireAfterAccessMinutes(), TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+        GuavaCacheMetrics.monitor(meterRegistry, memories, "chat.memory.registry");
+        Gauge.builder("chat.memory.registry.estimated.bytes", this, CustomerChatMemoryProvider::estimatedBytes)
+            .description("ChatMemory 实例估算占用的堆内存")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
 
     @Override
     public ChatMemory get(Object o) {
         String key = o.toString();
-        if (!map.containsKey(key)) {
-            map.put(key, createMemory(key));
+        try {
+            return memories.get(key, () -> createMemory(key)).memory;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException("创建会话记忆失败: " + key, e.getCause());
         }
-        return map.get(o.toString());
     }
 
-    public Map<String, ChatMemory> getChatMemoryMap() {
-        return map;
+    /**
+     * 角色配置变化（max_tokens 影响记忆预算）时丢弃这些角色下会话的实例，按需重建
+     */
+    @EventListener
+    public void onRoleConfigChanged(RoleConfigChangedEvent event) {
+        memories.asMap().values().removeIf(entry -> entry.roleId != null && event.getRoleIds().contains(entry.roleId));
     }
 
-    private ChatMemory createMemory(Object id) {
-        return MessageWindowChatMemory.builder()
-            .id(id)
-            .maxMessages(MAX_MESSAGES)
-            .chatMemoryStore(memoryStore)
-            .build();
+    /**
+     * 移除会话的 ChatMemory 实例，下次访问时按最新角色配置重新创建
+     */
+    public void evict(String conversationId) {
+        memories.invalidate(conversationId);
+    }
+
+    private double estimatedBytes() {
+        long bytes = 0;
+        for (String key : memories.asMap().keySet()) {
+            bytes += registryConfig.getEstimatedBytesPerMemory() + key.length();
+        }
+        return bytes;
+    }
+
+    private RoleMemory createMemory(String conversationId) {
+        ConversationDO conversation = conversationMapper.selectByConversationId(conversationId);
+        Long roleId = conversation == null ? null : conversation.getRoleId();
+        ChatMemory memory = new TokenBudgetChatMemory(conversationId, memoryStore, tokenCountEstimator,
+            memoryBudget(conversationId, roleId));
+        return new RoleMemory(memory, roleId);
+    }
+
+    /**
+     * 记忆token预算 = 上下文上限 - 角色 max_tokens（为模型回复预留）
+     */
+    private int memoryBudget(String conversationId, Long roleId) {
+        RoleConfig role = roleId == null ? null : roleConfigCache.get(roleId);
+        int maxTokens = role != null ? role.getMaxTokens() : RoleConfigParser.extractMaxTokens(null);
+        int budget = chatMemoryConfig.getMaxContextTokens() - maxTokens;
+        if (budget <= 0) {
+            log.warn("角色max_tokens不小于上下文上限，会话仅保留当前一轮: conversationId={}", conversationId);
+        }
+        return Math.max(budget, 0);
+    }
+
+    /**
+     * 注册表条目：会话的 ChatMemory 及其所属角色，角色配置变化时按角色失效
+     */
+    @AllArgsConstructor
+    private static class RoleMemory {
+        private final ChatMemory memory;
+        /** 会话不存在时为null */
+        private final Long roleId;
     }
 }
@@ -1,19 +1,26 @@
 package com.tripdog.ai;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
-import com.alibaba.dashscope.tokenizers.Tokenizer;
-import com.alibaba.dashscope.tokenizers.TokenizerFactory;
-import com.google.common.reflect.TypeToken;
 import com.tripdog.ai.compress.CompressionService;
+import com.tripdog.ai.compress.SummaryRange;
+import com.tripdog.ai.memory.ChatHistoryWriteBehind;
+import com.tripdog.ai.memory.ChatHistoryConverter;
+import com.tripdog.ai.memory.ChatMemoryConfig;
+import com.tripdog.ai.memory.ChatMemoryEntry;
+import com.tripdog.ai.memory.ConversationContext;
+import com.tripdog.ai.memory.ConversationContextCache;
+import com.tripdog.ai.memory.LocalQwenTokenCountEstimator;
+import com.tripdog.ai.metrics.ChatMetrics;
 import com.tripdog.common.Constants;
-import com.tripdog.common.utils.JsonUtil;
 import com.tripdog.mapper.ChatHistoryMapper;
+import com.tripdog.mapper.ConversationSummaryMapper;
 import com.tripdog.model.entity.ChatHistoryDO;
+import com.tripdog.model.entity.ConversationSummaryDO;
 import com.tripdog.model.builder.ConversationBuilder;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
@@ -21,7 +28,6 @@ import dev.langchain4j.data.message.CustomMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
@@ -39,55 +45,69 @@ import static com.tripdog.common.Constants.INJECT_TEMPLATE;
 @Slf4j
 public class PersistentChatMemoryStore implements ChatMemoryStore {
     final ChatHistoryMapper chatHistoryMapper;
-    private final Tokenizer tokenizer = TokenizerFactory.qwen();
+    final ConversationSummaryMapper conversationSummaryMapper;
     private final String USER = "user";
     private final String ASSISTANT = "assistant";
     private final String SYSTEM = "system";
     private final String TOOL = "tool";
     private final CompressionService compressionService;
+    private final ConversationContextCache chatMemoryCache;
+    private final ChatHistoryConverter chatHistoryConverter;
+    private final ChatHistoryWriteBehind chatHistoryWriteBehind;
+    private final ChatMemoryConfig chatMemoryConfig;
+    private final LocalQwenTokenCountEstimator tokenCountEstimator;
+    private final ChatMetrics chatMetrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     public List<ChatMessage> getMessages(Object o) {
         String conversationId = (String) o;
-        List<ChatHistoryDO> chatHistoryDOS = chatHistoryMapper.selectAllById(conversationId);
-        List<ChatMessage> chatMessages = new ArrayList<>();
+        ConversationContext context = chatMetrics.timeStage(ChatMetrics.HISTORY_LOAD,
+            () -> chatMemoryCache.getOrLoad(conversationId, () -> loadContext(conversationId)));
 
+        // 压缩处理
+        return chatMetrics.timeStage(ChatMetrics.COMPRESSION, () -> compressionService.compress(conversationId, context));
+    }
+
+    /**
+     * 从数据库加载会话上下文：系统提示词 + 最近一次摘要 + 检查点之后最近 loadLimit 条消息
+     * 检查点取最近一次写入的系统提示词（创建/重置会话）与摘要覆盖范围终点中较新的一个
+     */
+    private ConversationContext loadContext(String conversationId) {
+        // 先写出尚在队列中的消息，保证读到最新记录
+        chatHistoryWriteBehind.flush();
+
+        ChatHistoryDO systemDO = chatHistoryMapper.selectLatestSystemMessage(conversationId);
+        long afterId = systemDO == null ? 0L : systemDO.getId();
+        ConversationSummaryDO summary = conversationSummaryMapper.selectLatestByConversationId(conversationId);
+        if (summary != null && SummaryRange.endOf(summary.getMessageRange()) > afterId) {
+            afterId = SummaryRange.endOf(summary.getMessageRange());
+        } else {
+            // 摘要早于最近一次重置，已失效
+            summary = null;
+        }
+        List<ChatHistoryDO> chatHistoryDOS = chatHistoryMapper.selectMessagesAfter(conversationId, afterId, chatMemoryConfig.getLoadLimit());
+        Collections.reverse(chatHistoryDOS);
 
+        boolean truncated = chatHistoryDOS.size() >= chatMemoryConfig.getLoadLimit();
+        List<ChatMemoryEntry> entries = new ArrayList<>();
         for (ChatHistoryDO d : chatHistoryDOS) {
-            // 上下文使用检索增强后的内容
-            String content = StringUtils.hasText(d.getEnhancedContent()) ? d.getEnhancedContent() : d.getContent();
-
-            switch (d.getRole()) {
-                case USER:
-                    chatMessages.add(UserMessage.from(content));
-                    break;
-                case ASSISTANT:
-                    if(StringUtils.hasText(d.getToolExecResult())) {
-                        // String json = d.getToolCall();
-                        // ToolExecutionRequest toolCall = JsonUtil.fromJson(json, ToolExecutionRequest.class);
-                        // ToolExecutionResultMessage.toolExecutionResultMessage(toolCall,d.getToolExecResult());
-                        chatMessages.add(ToolExecutionResultMessage.from("id","toolName",d.getToolExecResult()));
-                    } else {
-                        if(StringUtils.hasText(d.getToolCall())) {
-                            TypeToken<List<ToolExecutionRequest>> toolCalls = new TypeToken<>() {};
-                            String toolCallJson = d.getToolCall();
-                            chatMessages.add(AiMessage.from(JsonUtil.fromJsonList(toolCallJson, toolCalls)));
-                        }else {
-                            chatMessages.add(AiMessage.from(content));
-                        }
-                    }
-
-                    break;
-                case SYSTEM:
-                    chatMessages.add(SystemMessage.from(content));
-                    break;
+            ChatMemoryEntry entry = toEntry(d);
+            if (entry == null) {
+                continue;
             }
+            // 截断后从第一条用户消息开始，避免以孤立的工具调用/结果开头
+            if (truncated && entries.isEmpty() && !(entry.getMessage() instanceof UserMessage)) {
+                continue;
+            }
+            entries.add(entry);
         }
+        int summaryTokens = summary == null ? 0 : tokenCountEstimator.estimateTokenCountInText(summary.getSummaryContent());
+        return ConversationContext.of(systemDO == null ? null : toEntry(systemDO), summary, summaryTokens, entries);
+    }
 
-
-        // 压缩处理
-        return compressionService.compress(chatMessages);
+    private ChatMemoryEntry toEntry(ChatHistoryDO d) {
+        return chatHistoryConverter.toEntry(d);
     }
 
     @Override
@@ -127,13 +147,26 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
                 chatHistoryDO.setContent(extractOrigin(content));
             }
         }
-        chatHistoryMapper.insert(chatHistoryDO);
+        // 写入时计算一次token数，后续预算检查直接累加
+        int tokens = tokenCountEstimator.estimateTokenCountInMessage(latestMessage);
+        if (latestMessage instanceof AiMessage) {
+            chatHistoryDO.setOutputTokens(tokens);
+        } else {
+            chatHistoryDO.setInputTokens(tokens);
+        }
+        chatHistoryWriteBehind.write(chatHistoryDO);
+        chatMemoryCache.append(conversationId, toEntry(chatHistoryDO));
     }
 
     @Override
     public void deleteMessages(Object o) {
         String conversationId = o.toString();
+        // 先写出队列中的消息，避免删除后旧消息再被插入
+        chatHistoryWriteBehind.flush();
         chatHistoryMapper.deleteByConversationId(conversationId);
+        conversationSummaryMapper.deleteByConversationId(conversationId);
+        compressionService.discardPending(conversationId);
+        chatMemoryCache.invalidate(conversationId);
     }
 
 
@@ -0,0 +1,34 @@
+package com.tripdog.ai.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 对话准入控制配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.admission")
+public class AdmissionConfig {
+    /** 是否开启准入控制 */
+    private boolean enabled = true;
+    /** 本节点同时生成回复的上限 */
+    private int maxConcurrent = 200;
+    /** 单个用户同时进行（生成中+排队中）的对话上限，按节点计 */
+    private int maxConcurrentPerUser = 2;
+    /** 本节点满载时最多排队等待的请求数，超出直接拒绝 */
+    private int maxQueued = 100;
+    /** 满载时排队等待的最长时间（毫秒），超时拒绝；0 表示不排队、满载立即拒绝，最多等待 1000 */
+    private long queueTimeoutMs = 0;
+    /** 单个用户每分钟可发起的对话数（令牌补充速率） */
+    private int ratePerMinute = 20;
+    /** 令牌桶容量，允许的突发请求数 */
+    private int burst = 5;
+    /** 限流计数位置；local: 节点内存，redis: 多节点共享 */
+    private String rateLimiter = "local";
+    /** redis 模式下令牌桶的 key 前缀 */
+    private String redisKeyPrefix = "chat:rate:";
+    /** 满载或并发超限时建议客户端重试的间隔（秒） */
+    private int busyRetryAfterSeconds = 5;
+}
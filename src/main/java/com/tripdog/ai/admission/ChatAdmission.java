@@ -0,0 +1,195 @@
+package com.tripdog.ai.admission;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.stereotype.Component;
+
+import com.tripdog.common.ErrorCode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 对话准入控制，发起新一轮回复前调用 {@link #admit(Long)}，回复结束时释放返回的 {@link Permit}
+ * 依次检查：
+ * 1. 用户在本节点同时进行的对话数不超过 maxConcurrentPerUser
+ * 2. 本节点同时生成的回复数不超过 maxConcurrent；满载时默认立即拒绝，queueTimeoutMs 大于0时进入公平队列，
+ *    按用户轮转放行，同一用户的多个请求不会挤占其他用户的名额；队列满或等待超时即拒绝，等待最长 {@link #MAX_QUEUE_WAIT_MS}
+ * 3. 拿到名额后再扣用户令牌桶（{@link RateLimiter}），被并发检查拒绝的请求不消耗额度；超出时归还名额并返回需等待的时间
+ * 拒绝时抛出 {@link ChatRejectedException}，由全局异常处理转为 429 并带 Retry-After。
+ * 拒绝次数按原因记录在 chat.admission.rejected，生成中/排队中的数量以 chat.admission.active/queued 注册为 gauge。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatAdmission {
+    private static final Permit NOOP = () -> { };
+    /** 排队等待的上限（毫秒），排队只用于削峰，长时间占用请求线程不如直接让客户端重试 */
+    static final long MAX_QUEUE_WAIT_MS = 1000;
+
+    private final AdmissionConfig config;
+    private final RateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+    /** 每个用户进行中（生成中+排队中）的对话数 */
+    private final Map<Long, Integer> userActive = new HashMap<>();
+    /** 排队中的请求，按用户分组；放行时取队首用户的一个请求，再把该用户移到队尾 */
+    private final LinkedHashMap<Long, ArrayDeque<CompletableFuture<Void>>> waiting = new LinkedHashMap<>();
+    private int active;
+    private int queued;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("chat.admission.active", this, a -> a.active)
+            .description("本节点正在生成的回复数")
+            .register(meterRegistry);
+        Gauge.builder("chat.admission.queued", this, a -> a.queued)
+            .description("本节点排队等待生成的请求数")
+            .register(meterRegistry);
+        if (config.getQueueTimeoutMs() > MAX_QUEUE_WAIT_MS) {
+            log.warn("chat.admission.queueTimeoutMs={} 超过上限，按 {}ms 等待", config.getQueueTimeoutMs(), MAX_QUEUE_WAIT_MS);
+        }
+    }
+
+    /**
+     * 申请一次生成名额，被拒绝时抛出 {@link ChatRejectedException}
+     */
+    public Permit admit(Long userId) {
+        if (!config.isEnabled()) {
+            return NOOP;
+        }
+        Permit permit = acquireSlot(userId);
+        long waitMs = rateLimiter.tryAcquire(userId);
+        if (waitMs > 0) {
+            permit.release();
+            throw reject("rate", ErrorCode.CHAT_RATE_LIMITED, TimeUnit.MILLISECONDS.toSeconds(waitMs + 999), userId);
+        }
+        return permit;
+    }
+
+    /**
+     * 占用用户与节点的并发名额，未开启排队时满载立即拒绝
+     */
+    private Permit acquireSlot(Long userId) {
+        long queueTimeoutMs = Math.min(config.getQueueTimeoutMs(), MAX_QUEUE_WAIT_MS);
+        CompletableFuture<Void> ticket;
+        synchronized (this) {
+            int current = userActive.getOrDefault(userId, 0);
+            if (current >= config.getMaxConcurrentPerUser()) {
+                throw reject("user", ErrorCode.CHAT_USER_BUSY, config.getBusyRetryAfterSeconds(), userId);
+            }
+            if (active < config.getMaxConcurrent() && queued == 0) {
+                active++;
+                userActive.put(userId, current + 1);
+                return new UserPermit(userId);
+            }
+            if (queueTimeoutMs <= 0 || queued >= config.getMaxQueued()) {
+                throw reject("overload", ErrorCode.CHAT_OVERLOADED, config.getBusyRetryAfterSeconds(), userId);
+            }
+            ticket = new CompletableFuture<>();
+            waiting.computeIfAbsent(userId, id -> new ArrayDeque<>()).add(ticket);
+            queued++;
+            userActive.put(userId, current + 1);
+        }
+
+        try {
+            ticket.get(queueTimeoutMs, TimeUnit.MILLISECONDS);
+            return new UserPermit(userId);
+        } catch (TimeoutException | ExecutionException e) {
+            return abandon(userId, ticket);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return abandon(userId, ticket);
+        }
+    }
+
+    /**
+     * 放弃排队；等待期间恰好已被放行时照常返回名额
+     */
+    private synchronized Permit abandon(Long userId, CompletableFuture<Void> ticket) {
+        if (ticket.isDone()) {
+            return new UserPermit(userId);
+        }
+        ArrayDeque<CompletableFuture<Void>> tickets = waiting.get(userId);
+        if (tickets != null && tickets.remove(ticket)) {
+            queued--;
+            if (tickets.isEmpty()) {
+                waiting.remove(userId);
+            }
+        }
+        decrementUser(userId);
+        throw reject("queueTimeout", ErrorCode.CHAT_OVERLOADED, config.getBusyRetryAfterSeconds(), userId);
+    }
+
+    private synchronized void release(Long userId) {
+        decrementUser(userId);
+        Iterator<Map.Entry<Long, ArrayDeque<CompletableFuture<Void>>>> it = waiting.entrySet().iterator();
+        if (!it.hasNext()) {
+            active--;
+            return;
+        }
+        // 名额直接转给队首用户，active 不变
+        Map.Entry<Long, ArrayDeque<CompletableFuture<Void>>> next = it.next();
+        it.remove();
+        CompletableFuture<Void> ticket = next.getValue().poll();
+        queued--;
+        if (!next.getValue().isEmpty()) {
+            waiting.put(next.getKey(), next.getValue());
+        }
+        ticket.complete(null);
+    }
+
+    private void decrementUser(Long userId) {
+        Integer current = userActive.get(userId);
+        if (current == null || current <= 1) {
+            userActive.remove(userId);
+        } else {
+            userActive.put(userId, current - 1);
+        }
+    }
+
+    private ChatRejectedException reject(String reason, ErrorCode errorCode, long retryAfterSeconds, Long userId) {
+        rejectedCounters.computeIfAbsent(reason, r -> Counter.builder("chat.admission.rejected")
+            .tag("reason", r)
+            .register(meterRegistry)).increment();
+        log.info("对话请求被拒绝: userId={}, reason={}, retryAfter={}s", userId, reason, retryAfterSeconds);
+        return new ChatRejectedException(errorCode, Math.max(retryAfterSeconds, 1));
+    }
+
+    /**
+     * 一次生成名额，本轮回复结束（完成、失败、取消或被拒绝）时释放，重复释放无副作用
+     */
+    public interface Permit {
+        void release();
+    }
+
+    private class UserPermit implements Permit {
+        private final Long userId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        UserPermit(Long userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                ChatAdmission.this.release(userId);
+            }
+        }
+    }
+}
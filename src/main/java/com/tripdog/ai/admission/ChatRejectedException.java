@@ -0,0 +1,20 @@
+package com.tripdog.ai.admission;
+
+import com.tripdog.common.ErrorCode;
+
+import lombok.Getter;
+
+/**
+ * 对话请求被准入控制拒绝，对应 HTTP 429，retryAfterSeconds 写入 Retry-After
+ */
+@Getter
+public class ChatRejectedException extends RuntimeException {
+    private final ErrorCode errorCode;
+    private final long retryAfterSeconds;
+
+    public ChatRejectedException(ErrorCode errorCode, long retryAfterSeconds) {
+        super(errorCode.getMessage());
+        this.errorCode = errorCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
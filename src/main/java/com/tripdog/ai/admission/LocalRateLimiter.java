@@ -0,0 +1,67 @@
+package com.tripdog.ai.admission;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 节点内存中的令牌桶（chat.admission.rateLimiter=local）
+ * 每个用户一个桶，空闲到桶满所需时间后淘汰；多节点部署时每个节点各自计数
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.admission", name = "rateLimiter", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LocalRateLimiter implements RateLimiter {
+    private final AdmissionConfig config;
+    private Cache<Long, TokenBucket> buckets;
+    /** 每毫秒补充的令牌数 */
+    private double tokensPerMs;
+
+    @PostConstruct
+    void init() {
+        tokensPerMs = config.getRatePerMinute() / 60000.0;
+        // 空闲超过桶满所需时间的用户重新建桶，结果相同
+        long refillMs = (long) Math.ceil(config.getBurst() / tokensPerMs);
+        buckets = CacheBuilder.newBuilder()
+            .expireAfterAccess(refillMs + 1000, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    @Override
+    public long tryAcquire(Long userId) {
+        try {
+            return buckets.get(userId, () -> new TokenBucket(config.getBurst(), System.currentTimeMillis()))
+                .tryAcquire(System.currentTimeMillis());
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private class TokenBucket {
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        synchronized long tryAcquire(long now) {
+            tokens = Math.min(config.getBurst(), tokens + (now - lastRefill) * tokensPerMs);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerMs);
+        }
+    }
+}
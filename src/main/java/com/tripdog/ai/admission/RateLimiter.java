@@ -0,0 +1,13 @@
+package com.tripdog.ai.admission;
+
+/**
+ * 按用户的令牌桶限流
+ * 节点内存（chat.admission.rateLimiter=local）或 Redis 共享（redis）两种实现
+ */
+public interface RateLimiter {
+    /**
+     * 尝试为用户取一个令牌
+     * @return 0 表示放行；否则为下一个令牌可用前需等待的毫秒数
+     */
+    long tryAcquire(Long userId);
+}
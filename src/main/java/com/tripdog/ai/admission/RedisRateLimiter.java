@@ -0,0 +1,54 @@
+package com.tripdog.ai.admission;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Redis 中的令牌桶（chat.admission.rateLimiter=redis），多个节点共享同一用户的额度
+ * 每个用户一个哈希（tokens、ts），补充与扣减在一个脚本内完成，时间取 Redis 服务器时间避免节点时钟偏差。
+ * Redis 不可用时放行，只剩节点内的并发上限兜底。
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.admission", name = "rateLimiter", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisRateLimiter implements RateLimiter {
+    /** 返回需等待的毫秒数，0 表示已扣减一个令牌 */
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+        "local rate = tonumber(ARGV[1])\n"
+            + "local burst = tonumber(ARGV[2])\n"
+            + "local time = redis.call('TIME')\n"
+            + "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n"
+            + "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n"
+            + "local tokens = tonumber(bucket[1]) or burst\n"
+            + "local ts = tonumber(bucket[2]) or now\n"
+            + "tokens = math.min(burst, tokens + math.max(now - ts, 0) * rate)\n"
+            + "local wait = 0\n"
+            + "if tokens >= 1 then tokens = tokens - 1 else wait = math.ceil((1 - tokens) / rate) end\n"
+            + "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))\n"
+            + "redis.call('PEXPIRE', KEYS[1], math.ceil(burst / rate) + 1000)\n"
+            + "return wait", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final AdmissionConfig config;
+
+    @Override
+    public long tryAcquire(Long userId) {
+        try {
+            Long wait = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT, List.of(config.getRedisKeyPrefix() + userId),
+                String.valueOf(config.getRatePerMinute() / 60000.0), String.valueOf(config.getBurst()));
+            return wait == null ? 0 : wait;
+        } catch (DataAccessException e) {
+            log.warn("Redis限流失败，本次放行: userId={}", userId, e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.tripdog.ai.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 语义回复缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.semantic-cache")
+public class SemanticCacheConfig {
+    /** 是否开启，默认关闭 */
+    private boolean enabled = false;
+    /** 命中所需的最小余弦相似度 */
+    private double similarityThreshold = 0.95;
+    /** 缓存回复的有效期（分钟），从写入时算起 */
+    private long ttlMinutes = 60;
+    /** 每个角色最多缓存的问答条数，超出按最近最少使用淘汰 */
+    private int maxEntriesPerRole = 500;
+    /** 问题超过该长度（字符）不查缓存也不写入，长问题通常带有个人上下文 */
+    private int maxQuestionChars = 200;
+    /** 查询缓存（含计算问题向量）的超时（毫秒），超时按未命中处理 */
+    private long probeTimeoutMs = 1000;
+}
@@ -0,0 +1,21 @@
+package com.tripdog.ai.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一次语义缓存查询的结果：问题向量，以及命中时的缓存回复
+ * 未命中时本轮回复完成后用同一个向量写回缓存，无需重新计算
+ */
+@Getter
+@AllArgsConstructor
+public class SemanticCacheProbe {
+    private final Embedding embedding;
+    /** 命中的缓存回复，未命中为null */
+    private final String answer;
+
+    public boolean isHit() {
+        return answer != null;
+    }
+}
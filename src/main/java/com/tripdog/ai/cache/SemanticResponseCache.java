@@ -0,0 +1,153 @@
+package com.tripdog.ai.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tripdog.ai.embedding.DocCountCache;
+import com.tripdog.ai.embedding.QueryEmbeddingModelFactory;
+import com.tripdog.ai.metrics.ChatMetrics;
+import com.tripdog.ai.rewrite.MultiTurnRewriteService;
+import com.tripdog.ai.role.RoleConfigChangedEvent;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按角色的语义回复缓存（chat.semantic-cache.enabled 开启）
+ * 同一角色下与已回答问题向量相似度不低于阈值的问题直接复用缓存回复，不调用模型。
+ * 只对该角色下没有私有文档的用户生效：有文档的用户回复依赖检索结果，既不查也不写缓存；带图片的提问、
+ * "继续"、"第2个"等依赖上一轮回答的指令同样跳过。
+ * 缓存在同一角色的用户间共享，只写入与个人数据无关的回复：调用方需保证本轮没有调用工具、
+ * 会话记忆中除本轮问答外没有历史消息或摘要，见 {@link #put}。缓存回复不考虑会话上下文，适合问题本身即完整语义的场景。
+ * 每个角色一个容量有限、写入后过期的缓存，命中时线性比较该角色下的全部问题向量；角色配置变化时清空对应角色。
+ * 查询结果按 hit/miss/skip 记录在 chat.semantic.cache.lookups，命中率 = hit / (hit + miss)。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SemanticResponseCache {
+    private final SemanticCacheConfig config;
+    private final QueryEmbeddingModelFactory queryEmbeddingModelFactory;
+    private final DocCountCache docCountCache;
+    private final MeterRegistry meterRegistry;
+    private final ChatMetrics chatMetrics;
+    private final MultiTurnRewriteService rewriteService;
+    private final Map<Long, Cache<String, CachedAnswer>> roles = new ConcurrentHashMap<>();
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter skipCounter;
+
+    @PostConstruct
+    void init() {
+        hitCounter = lookupCounter("hit");
+        missCounter = lookupCounter("miss");
+        skipCounter = lookupCounter("skip");
+        Gauge.builder("chat.semantic.cache.size", this, SemanticResponseCache::size)
+            .description("语义回复缓存的问答条数")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public long getProbeTimeoutMs() {
+        return config.getProbeTimeoutMs();
+    }
+
+    /**
+     * 查询缓存：不适用（用户有私有文档、问题过长）时返回null，否则返回问题向量及命中的回复
+     */
+    public SemanticCacheProbe probe(Long roleId, Long userId, String question) {
+        if (!isCacheable(question) || docCountCache.hasDocs(userId, roleId)) {
+            skipCounter.increment();
+            return null;
+        }
+        Embedding embedding = chatMetrics.timeStage(ChatMetrics.EMBEDDING, () -> queryEmbeddingModelFactory.getModel().embed(question).content());
+        CachedAnswer best = null;
+        double bestScore = config.getSimilarityThreshold();
+        Cache<String, CachedAnswer> answers = roles.get(roleId);
+        if (answers != null) {
+            for (Map.Entry<String, CachedAnswer> entry : answers.asMap().entrySet()) {
+                double score = CosineSimilarity.between(embedding, entry.getValue().embedding);
+                if (score >= bestScore) {
+                    best = entry.getValue();
+                    bestScore = score;
+                }
+            }
+        }
+        if (best == null) {
+            missCounter.increment();
+            return new SemanticCacheProbe(embedding, null);
+        }
+        // 刷新访问顺序，常被命中的问答不被淘汰
+        answers.getIfPresent(best.question);
+        hitCounter.increment();
+        log.info("语义缓存命中: roleId={}, score={}, cachedQuestion={}", roleId, bestScore, best.question);
+        return new SemanticCacheProbe(embedding, best.answer);
+    }
+
+    /**
+     * 写入一轮未命中缓存的问答
+     * 缓存跨用户共享，只能写入不依赖个人上下文的回复：调用了工具、或生成时会话记忆中已有历史的轮次不要写入
+     */
+    public void put(Long roleId, SemanticCacheProbe probe, String question, String answer) {
+        if (probe == null || probe.isHit() || answer == null || answer.isBlank()) {
+            return;
+        }
+        roles.computeIfAbsent(roleId, id -> CacheBuilder.newBuilder()
+                .maximumSize(config.getMaxEntriesPerRole())
+                .expireAfterWrite(config.getTtlMinutes(), TimeUnit.MINUTES)
+                .build())
+            .put(question, new CachedAnswer(question, answer, probe.getEmbedding()));
+    }
+
+    /**
+     * 角色提示词等配置变化后，旧回复不再代表该角色，清空对应角色的缓存
+     */
+    @EventListener
+    public void onRoleConfigChanged(RoleConfigChangedEvent event) {
+        for (Long roleId : event.getRoleIds()) {
+            roles.remove(roleId);
+        }
+    }
+
+    private boolean isCacheable(String question) {
+        return question != null && !question.isBlank() && question.length() <= config.getMaxQuestionChars()
+            && !rewriteService.referencesPrevious(question);
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder("chat.semantic.cache.lookups")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private double size() {
+        long size = 0;
+        for (Cache<String, CachedAnswer> answers : roles.values()) {
+            size += answers.size();
+        }
+        return size;
+    }
+
+    @AllArgsConstructor
+    private static class CachedAnswer {
+        private final String question;
+        private final String answer;
+        private final Embedding embedding;
+    }
+}
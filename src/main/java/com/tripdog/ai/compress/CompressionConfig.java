@@ -13,10 +13,16 @@ import org.springframework.stereotype.Component;
 public class CompressionConfig {
     /** 是否启用压缩 */
     private boolean enabled = true;
-    /** 最大总token预算（粗略估算，可后续接入真实token统计） */
+    /** 最大总token预算（按消息写入时记录的token数累加） */
     private int maxTotalTokens = 6000;
     /** 最近保留的原始消息条数（User+Assistant交互消息） */
     private int recentRawCount = 10;
     /** 触发压缩的最小历史消息条数 */
     private int minMessagesToCompress = 18;
+    /** 是否在后台异步生成摘要（关闭则在请求线程内同步生成） */
+    private boolean async = true;
+    /** 后台摘要线程数 */
+    private int summaryThreads = 2;
+    /** 后台摘要任务队列容量，满后丢弃新任务，下一轮再次触发 */
+    private int summaryQueueCapacity = 200;
 }
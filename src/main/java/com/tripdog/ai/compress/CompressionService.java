@@ -4,91 +4,265 @@ import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.slf4j.MDC;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import com.alibaba.dashscope.tokenizers.Tokenizer;
-import com.alibaba.dashscope.tokenizers.TokenizerFactory;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import com.tripdog.ai.assistant.CompressAssistant;
+import com.tripdog.ai.memory.ChatHistoryWriteBehind;
+import com.tripdog.ai.memory.ConversationContextCache;
+import com.tripdog.ai.memory.ChatMemoryEntry;
+import com.tripdog.ai.memory.ConversationContext;
+import com.tripdog.ai.memory.LocalQwenTokenCountEstimator;
+import com.tripdog.mapper.ChatHistoryMapper;
+import com.tripdog.mapper.ConversationSummaryMapper;
+import com.tripdog.model.builder.ConversationBuilder;
+import com.tripdog.model.entity.ChatHistoryDO;
+import com.tripdog.model.entity.ConversationSummaryDO;
 
 /**
- * Mock压缩实现：
+ * 对话压缩：
  * 逻辑：
- * 1. 若未启用或消息条数不足或token未超预算 → 原样返回
- * 2. 否则：
- *    - 提取除去最后 recentRawCount 的“老消息”
- *    - 对老消息做一个规则摘要（这里只是简单拼接与截断，真正实现留待后续）
- *    - 构造一个新的 SystemMessage 作为“历史摘要”
- *    - 返回： [原始第一条System(若有), 摘要SystemMessage, 最近原始消息...]
+ * 1. 若未启用或检查点之后的消息条数不足或token未超预算 → 直接拼装上下文返回
+ * 2. 否则（默认异步模式）：
+ *    - 本轮不等待摘要，先退化为截断：只保留上一次摘要 + 最后 recentRawCount 条消息（保证以用户消息开头）
+ *    - 记录待摘要的会话，本轮回复完成后由 {@link #summarizeAsync(String)} 提交到后台线程
+ *    - 后台把老消息连同上一次摘要交给 CompressAssistant 生成新摘要，
+ *      写入 t_conversation_summary（message_range 记录覆盖的消息ID范围）并折叠缓存中已覆盖的消息
+ *    - 下一轮直接复用已就绪的摘要；摘要仍未完成时继续截断
+ *    - 返回： [System(原始提示词 + 摘要), 最近原始消息...]
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CompressionService {
+    private static final String SUMMARY_HEADER = "\n以下是用户最近对话的摘要：\n";
+    /** 回查待压缩消息ID时在上下文条数之外多取的行数 */
+    private static final int ID_RESOLVE_SLACK = 20;
     private final CompressionConfig config;
     private final CompressAssistant compressAssistant;
-    private final Tokenizer tokenizer = TokenizerFactory.qwen();
-
-    public List<ChatMessage> compress(List<ChatMessage> original) {
-        if (!config.isEnabled()) return original;
-        if (original == null || original.size() < config.getMinMessagesToCompress()) return original;
-        // 粗略token估算：按字符长度 / 1.8（Mock）
-        int estimatedTokens = original.stream()
-            .mapToInt((item) -> {
-                String text = "";
-                if (item instanceof SystemMessage systemMessage) {
-                    text = systemMessage.text();
-                } else if (item instanceof UserMessage userMessage) {
-                    text = userMessage.toString();
-                } else if (item instanceof AiMessage) {
-                    // 工具调用跳过
-                    if(StringUtils.hasText(((AiMessage) item).text())) {
-                        text = ((AiMessage) item).text();
-                    }
+    private final ConversationSummaryMapper conversationSummaryMapper;
+    private final ChatHistoryMapper chatHistoryMapper;
+    private final ConversationContextCache chatMemoryCache;
+    private final ChatHistoryWriteBehind chatHistoryWriteBehind;
+    private final LocalQwenTokenCountEstimator tokenCountEstimator;
+    /** 超出预算、等待后台摘要的会话及其上下文快照 */
+    private final Map<String, ConversationContext> pendingSummaries = new ConcurrentHashMap<>();
+    /** 正在生成摘要的会话，同一会话同时只跑一个摘要任务 */
+    private final Set<String> runningSummaries = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor summaryExecutor;
+    private int summaryHeaderTokens;
+
+    @PostConstruct
+    void start() {
+        summaryHeaderTokens = tokenCountEstimator.estimateTokenCountInText(SUMMARY_HEADER);
+        AtomicInteger seq = new AtomicInteger();
+        summaryExecutor = new ThreadPoolExecutor(config.getSummaryThreads(), config.getSummaryThreads(),
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(config.getSummaryQueueCapacity()), r -> {
+                Thread t = new Thread(r, "chat-summary-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        summaryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void stop() {
+        summaryExecutor.shutdownNow();
+    }
+
+    public List<ChatMessage> compress(String conversationId, ConversationContext context) {
+        ConversationSummaryDO summary = context.getSummary();
+        int summaryTokens = context.getSummaryTokens();
+        List<ChatMemoryEntry> entries = context.getEntries();
+        if (config.isEnabled()
+            && entries.size() >= config.getMinMessagesToCompress()
+            && context.getTokens() > config.getMaxTotalTokens()) {
+            if (config.isAsync()) {
+                // 摘要在后台生成，本轮先截断老消息
+                pendingSummaries.put(conversationId, context);
+                entries = entries.subList(splitIndex(entries), entries.size());
+            } else {
+                ConversationSummaryDO folded = fold(conversationId, context);
+                if (folded != null) {
+                    long coveredUntilId = SummaryRange.endOf(folded.getMessageRange());
+                    summary = folded;
+                    summaryTokens = tokenCountEstimator.estimateTokenCountInText(folded.getSummaryContent());
+                    entries = entries.stream()
+                        .filter(e -> e.getId() == null || e.getId() > coveredUntilId)
+                        .toList();
+                }
+            }
+        }
+        return assemble(context.getSystem(), summary, summaryTokens, entries);
+    }
+
+    /**
+     * 本轮回复完成后调用：若该会话本轮超出预算，则提交后台摘要任务
+     */
+    public void summarizeAsync(String conversationId) {
+        ConversationContext context = pendingSummaries.remove(conversationId);
+        if (context == null || !runningSummaries.add(conversationId)) {
+            return;
+        }
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        try {
+            summaryExecutor.execute(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    fold(conversationId, context);
+                } catch (Exception e) {
+                    log.error("后台生成会话摘要失败, conversationId={}", conversationId, e);
+                } finally {
+                    runningSummaries.remove(conversationId);
+                    MDC.clear();
                 }
-                return tokenizer.encodeOrdinary(text)
-                    .size();
-            })
-            .sum();
-        if (estimatedTokens <= config.getMaxTotalTokens()) return original;
-
-        // 拆分：保留最近N条
-        int recentCount = Math.min(config.getRecentRawCount(), original.size());
-        int startIdx = original.size() - recentCount;
-        ChatMessage c = original.get(startIdx);
-        if(c instanceof AiMessage) {
-            startIdx --;
+            });
+        } catch (RejectedExecutionException e) {
+            runningSummaries.remove(conversationId);
+            log.warn("摘要任务队列已满，本轮跳过, conversationId={}", conversationId);
+        }
+    }
+
+    /**
+     * 会话被清空时丢弃尚未提交的摘要任务
+     */
+    public void discardPending(String conversationId) {
+        pendingSummaries.remove(conversationId);
+    }
+
+    /**
+     * 老消息与最近消息的分界：保留最后 recentRawCount 条，并向前移到用户消息处
+     */
+    private int splitIndex(List<ChatMemoryEntry> entries) {
+        int split = Math.max(entries.size() - config.getRecentRawCount(), 0);
+        while (split > 0 && !(entries.get(split).getMessage() instanceof UserMessage)) {
+            split--;
+        }
+        return split;
+    }
+
+    /**
+     * 把老消息与上一次摘要折叠成新摘要并持久化，返回新摘要；无可折叠消息时返回null
+     */
+    private ConversationSummaryDO fold(String conversationId, ConversationContext context) {
+        List<ChatMemoryEntry> entries = context.getEntries();
+        int split = splitIndex(entries);
+        if (split == 0) {
+            return null;
         }
+        List<ChatMemoryEntry> older = entries.subList(0, split);
 
-        SystemMessage systemMessage = (SystemMessage) original.getFirst();
-        List<ChatMessage> recent = new ArrayList<>(original.subList(startIdx, original.size()));
+        // 被折叠的消息需已落库拿到ID，才能记录摘要覆盖范围
+        chatHistoryWriteBehind.flush();
+        if (older.getLast().getId() == null && !resolveIds(conversationId, older, entries.size())) {
+            log.warn("待压缩消息未能从数据库对齐ID，本轮跳过摘要, conversationId={}", conversationId);
+            return null;
+        }
+        Long endId = older.getLast().getId();
+        ConversationSummaryDO previous = context.getSummary();
+        Long firstId = older.getFirst().getId();
+        long startId = previous != null ? SummaryRange.startOf(previous.getMessageRange())
+            : (firstId != null ? firstId : endId);
 
-        // 老消息范围（不包含最近的）
-        List<ChatMessage> older = new ArrayList<>(original.subList(1, original.size() - recentCount));
+        String content = buildSummary(previous, older);
+        ConversationSummaryDO summary = ConversationBuilder.buildAutoSummary(conversationId, content,
+            SummaryRange.format(startId, endId));
+        conversationSummaryMapper.insert(summary);
+        int summaryTokens = tokenCountEstimator.estimateTokenCountInText(content);
+        chatMemoryCache.applySummary(conversationId, summary, summaryTokens, endId);
 
+        log.info("会话摘要已更新: conversationId={}, folded={}, range={}, summaryTokens={}",
+            conversationId, older.size(), summary.getMessageRange(), summaryTokens);
+        return summary;
+    }
 
-        // 摘要生成 todo 分类抓取一些代表内容
-        String summary = buildSummary(older);
+    /**
+     * Redis 热数据中追加的消息在落库前序列化，不带ID：刷盘后从第一条待压缩消息的创建时间起取回数据库中的消息，
+     * 按角色和内容依次对齐，把ID回填到待压缩消息上；有消息对不上时返回false
+     */
+    private boolean resolveIds(String conversationId, List<ChatMemoryEntry> older, int contextSize) {
+        LocalDateTime since = older.getFirst().getHistory().getCreatedAt();
+        if (since == null) {
+            return false;
+        }
+        // 库中时间可能只精确到秒；多取的余量容纳同一秒内更早的消息和本轮之后新追加的消息
+        List<ChatHistoryDO> rows = chatHistoryMapper.selectMessagesSince(conversationId,
+            since.truncatedTo(ChronoUnit.SECONDS), contextSize + ID_RESOLVE_SLACK);
+        int next = 0;
+        for (ChatMemoryEntry entry : older) {
+            ChatHistoryDO history = entry.getHistory();
+            if (history.getId() != null) {
+                continue;
+            }
+            while (next < rows.size() && !sameMessage(rows.get(next), history)) {
+                next++;
+            }
+            if (next == rows.size()) {
+                return false;
+            }
+            history.setId(rows.get(next++).getId());
+        }
+        return true;
+    }
 
-        String systemContent = systemMessage.text();
-        String newSystemContent = systemContent + "\n以下是用户最近对话的摘要：\n" + summary;
-        systemMessage = SystemMessage.from(newSystemContent);
+    private static boolean sameMessage(ChatHistoryDO row, ChatHistoryDO history) {
+        return Objects.equals(row.getRole(), history.getRole()) && Objects.equals(row.getContent(), history.getContent());
+    }
 
-        List<ChatMessage> result = new ArrayList<>();
-        result.add(systemMessage);
-        result.addAll(recent);
+    /**
+     * 系统消息中是否拼接了历史摘要
+     */
+    public static boolean hasSummary(SystemMessage systemMessage) {
+        return systemMessage.text().contains(SUMMARY_HEADER);
+    }
 
-        log.debug("Compression applied: original={}, returned={}, summaryTokens={}", original.size(), result.size(), tokenizer.encodeOrdinary(summary).size());
+    private List<ChatMessage> assemble(ChatMemoryEntry system, ConversationSummaryDO summary, int summaryTokens,
+                                       List<ChatMemoryEntry> entries) {
+        List<ChatMessage> result = new ArrayList<>(entries.size() + 1);
+        if (system != null || summary != null) {
+            String systemContent = system != null ? ((SystemMessage) system.getMessage()).text() : "";
+            int systemTokens = system != null ? system.getTokens() : 0;
+            if (summary != null) {
+                systemContent = systemContent + SUMMARY_HEADER + summary.getSummaryContent();
+                systemTokens += summaryHeaderTokens + summaryTokens;
+            }
+            SystemMessage systemMessage = SystemMessage.from(systemContent);
+            // 拼装后的系统消息按各部分已知token数登记，记忆窗口计算预算时无需重新分词
+            tokenCountEstimator.remember(systemMessage, systemTokens);
+            result.add(systemMessage);
+        }
+        for (ChatMemoryEntry entry : entries) {
+            result.add(entry.getMessage());
+        }
         return result;
     }
 
-    private String buildSummary(List<ChatMessage> older) {
+    private String buildSummary(ConversationSummaryDO previous, List<ChatMemoryEntry> older) {
         StringBuilder originContext = new StringBuilder();
-        for (ChatMessage m : older) {
+        if (previous != null) {
+            originContext.append("[SUMMARY]").append(previous.getSummaryContent()).append('\n');
+        }
+        for (ChatMemoryEntry entry : older) {
+            ChatMessage m = entry.getMessage();
             if (m instanceof UserMessage) {
                 originContext.append("[USER]").append(cut(((UserMessage) m).singleText())).append('\n');
             } else if (m instanceof AiMessage) {
@@ -136,8 +310,4 @@ public class CompressionService {
         return String.format("用户提出了%d个问题，助手提供了%d次回应。主要讨论内容：%s",
                            userCount, assistantCount, topicsStr);
     }
-
-    private int calculateToken(String text) {
-        return tokenizer.encodeOrdinary(text).size();
-    }
 }
@@ -0,0 +1,34 @@
+package com.tripdog.ai.compress;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * 摘要覆盖范围（t_conversation_summary.message_range）的读写
+ * 格式为 t_chat_history 的 "起始ID-结束ID"，结束ID即摘要检查点，之后的消息以原文保留
+ */
+public class SummaryRange {
+
+    public static String format(long startId, long endId) {
+        return startId + "-" + endId;
+    }
+
+    public static long startOf(String messageRange) {
+        return parse(messageRange, 0);
+    }
+
+    public static long endOf(String messageRange) {
+        return parse(messageRange, 1);
+    }
+
+    private static long parse(String messageRange, int index) {
+        if (!StringUtils.hasText(messageRange)) {
+            return 0L;
+        }
+        String[] parts = messageRange.split("-");
+        try {
+            return parts.length == 2 ? Long.parseLong(parts[index].trim()) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.tripdog.ai.embedding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 带缓存的 EmbeddingModel，相同（规范化后相同）的文本不再重复调用远程向量模型
+ * 规范化只做 NFKC 与去首尾空白，不改变大小写和内部空白；可缓存的文本按规范化后的内容计算向量，保证 key 与向量对应同一段文本。
+ * key 为 模型名 + 规范化文本 的 SHA-256。
+ * 先查本节点 LRU 缓存，再查 Redis（开启时，一次 MGET），剩余的文本去重后合并为一次远程调用，结果写回两级缓存（Redis 一次管道写入）。
+ * Redis 中的向量为 float 小端字节的 Base64，读写失败按未命中处理。
+ * 查询结果按 result=local/redis/miss 记录在 chat.embedding.cache.lookups，同一批内的重复文本只计一次，
+ * 规范化后超过 maxTextChars 的文本不缓存、不计入。
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final EmbeddingCacheConfig config;
+    /** 未开启 Redis 二级缓存时为null */
+    private final StringRedisTemplate redisTemplate;
+    private final Cache<String, Embedding> local;
+    private final Counter localHitCounter;
+    private final Counter redisHitCounter;
+    private final Counter missCounter;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, EmbeddingCacheConfig config,
+                                 StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.config = config;
+        this.redisTemplate = redisTemplate;
+        this.local = CacheBuilder.newBuilder()
+            .maximumSize(config.getMaxEntries())
+            .build();
+        this.localHitCounter = lookupCounter(meterRegistry, "local");
+        this.redisHitCounter = lookupCounter(meterRegistry, "redis");
+        this.missCounter = lookupCounter(meterRegistry, "miss");
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        int size = textSegments.size();
+        Embedding[] embeddings = new Embedding[size];
+        /* key -> 本地未命中的文本及其在本批中的下标，相同文本只查询、计算一次 */
+        Map<String, Pending> pending = new LinkedHashMap<>();
+        /* 不缓存的文本，按原文计算 */
+        List<Integer> uncached = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            TextSegment segment = textSegments.get(i);
+            String text = normalize(segment.text());
+            if (text == null || text.length() > config.getMaxTextChars()) {
+                uncached.add(i);
+                continue;
+            }
+            String key = keyOf(text);
+            Pending same = pending.get(key);
+            if (same != null) {
+                same.indexes.add(i);
+                continue;
+            }
+            embeddings[i] = local.getIfPresent(key);
+            if (embeddings[i] != null) {
+                localHitCounter.increment();
+            } else {
+                pending.put(key, new Pending(TextSegment.from(text, segment.metadata()), i));
+            }
+        }
+        if (redisTemplate != null && !pending.isEmpty()) {
+            readRedis(pending, embeddings);
+        }
+        if (pending.isEmpty() && uncached.isEmpty()) {
+            return Response.from(List.of(embeddings));
+        }
+
+        List<TextSegment> misses = new ArrayList<>(pending.size() + uncached.size());
+        for (Pending p : pending.values()) {
+            misses.add(p.segment);
+        }
+        for (int i : uncached) {
+            misses.add(textSegments.get(i));
+        }
+        Response<List<Embedding>> response = delegate.embedAll(misses);
+        List<Embedding> content = response.content();
+        int j = 0;
+        Map<String, Embedding> written = new LinkedHashMap<>();
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            Embedding embedding = content.get(j++);
+            for (int i : entry.getValue().indexes) {
+                embeddings[i] = embedding;
+            }
+            missCounter.increment();
+            local.put(entry.getKey(), embedding);
+            written.put(entry.getKey(), embedding);
+        }
+        for (int i : uncached) {
+            embeddings[i] = content.get(j++);
+        }
+        if (redisTemplate != null && !written.isEmpty()) {
+            writeRedis(written);
+        }
+        return Response.from(List.of(embeddings), response.tokenUsage(), response.finishReason(), response.metadata());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    /**
+     * 从 Redis 补齐本地未命中的向量，命中的同时写入本地缓存并移出 pending
+     */
+    private void readRedis(Map<String, Pending> pending, Embedding[] embeddings) {
+        List<String> keys = new ArrayList<>(pending.keySet());
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            redisKeys.add(config.getRedisKeyPrefix() + key);
+        }
+        List<String> values;
+        try {
+            values = redisTemplate.opsForValue().multiGet(redisKeys);
+        } catch (DataAccessException e) {
+            log.warn("读取Redis查询向量缓存失败，按未命中处理", e);
+            return;
+        }
+        if (values == null) {
+            return;
+        }
+        for (int j = 0; j < keys.size(); j++) {
+            Embedding embedding = decode(values.get(j));
+            if (embedding == null) {
+                continue;
+            }
+            for (int i : pending.remove(keys.get(j)).indexes) {
+                embeddings[i] = embedding;
+            }
+            local.put(keys.get(j), embedding);
+            redisHitCounter.increment();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeRedis(Map<String, Embedding> written) {
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    written.forEach((key, embedding) -> ops.opsForValue().set(config.getRedisKeyPrefix() + key,
+                        encode(embedding), config.getRedisTtlMinutes(), TimeUnit.MINUTES));
+                    return null;
+                }
+            });
+        } catch (DataAccessException e) {
+            log.warn("写入Redis查询向量缓存失败", e);
+        }
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).strip();
+    }
+
+    private String keyOf(String normalized) {
+        return Hashing.sha256().hashString(modelName + "\n" + normalized, StandardCharsets.UTF_8).toString();
+    }
+
+    private static String encode(Embedding embedding) {
+        float[] vector = embedding.vector();
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    private static Embedding decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length == 0 || bytes.length % Float.BYTES != 0) {
+            return null;
+        }
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return Embedding.from(vector);
+    }
+
+    /**
+     * 本地未命中的一段文本，indexes 为本批中规范化后相同的所有下标
+     */
+    private static class Pending {
+        private final TextSegment segment;
+        private final List<Integer> indexes = new ArrayList<>(1);
+
+        Pending(TextSegment segment, int index) {
+            this.segment = segment;
+            this.indexes.add(index);
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chat.embedding.cache.lookups")
+            .description("查询向量缓存查询结果")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
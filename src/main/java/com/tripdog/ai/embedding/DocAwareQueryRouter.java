@@ -0,0 +1,76 @@
+package com.tripdog.ai.embedding;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.tripdog.common.utils.ThreadLocalUtils;
+
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.rag.query.router.QueryRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import static com.tripdog.common.Constants.ROLE_ID;
+import static com.tripdog.common.Constants.USER_ID;
+
+/**
+ * 检索路由：用户在该角色下没有文档、或消息过短/不含文字时不返回检索器，
+ * DefaultRetrievalAugmentor 随即跳过本轮检索，省去一次向量计算和一次 pgvector 查询
+ * 用户、角色与检索过滤条件一样从调用线程的上下文读取。
+ * 路由结果按 result=executed/no_docs/trivial 记录在 chat.retrieval.queries。
+ */
+@Component
+@RequiredArgsConstructor
+public class DocAwareQueryRouter implements QueryRouter {
+    private final RetrieverFactory retrieverFactory;
+    private final DocCountCache docCountCache;
+    private final RetrievalConfig config;
+    private final MeterRegistry meterRegistry;
+    private Counter executedCounter;
+    private Counter noDocsCounter;
+    private Counter trivialCounter;
+
+    @PostConstruct
+    void init() {
+        executedCounter = queryCounter("executed");
+        noDocsCounter = queryCounter("no_docs");
+        trivialCounter = queryCounter("trivial");
+    }
+
+    @Override
+    public Collection<ContentRetriever> route(Query query) {
+        if (isTrivial(query.text())) {
+            trivialCounter.increment();
+            return List.of();
+        }
+        if (config.isSkipWhenNoDocs()) {
+            Long userId = (Long) ThreadLocalUtils.get(USER_ID);
+            Long roleId = (Long) ThreadLocalUtils.get(ROLE_ID);
+            if (!docCountCache.hasDocs(userId, roleId)) {
+                noDocsCounter.increment();
+                return List.of();
+            }
+        }
+        executedCounter.increment();
+        return List.of(retrieverFactory.getRetriever());
+    }
+
+    private boolean isTrivial(String text) {
+        if (text == null) {
+            return true;
+        }
+        String trimmed = text.strip();
+        return trimmed.length() < config.getMinQueryChars() || trimmed.codePoints().noneMatch(Character::isLetterOrDigit);
+    }
+
+    private Counter queryCounter(String result) {
+        return Counter.builder("chat.retrieval.queries")
+            .description("对话检索路由结果")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
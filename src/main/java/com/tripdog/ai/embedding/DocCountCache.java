@@ -0,0 +1,56 @@
+package com.tripdog.ai.embedding;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tripdog.mapper.DocMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 用户在某角色下的文档数缓存（t_doc），供检索路由、语义缓存和模型选择判断用户是否有私有文档
+ * 本节点上传、删除文档时失效对应条目；其他节点的变化在 docCountTtlSeconds 内生效。
+ * 查询失败时按有文档处理且不缓存，宁可多检索一次也不漏掉文档。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DocCountCache {
+    private final DocMapper docMapper;
+    private final RetrievalConfig config;
+    private Cache<String, Integer> counts;
+
+    @PostConstruct
+    void init() {
+        counts = CacheBuilder.newBuilder()
+            .maximumSize(config.getMaxDocCountEntries())
+            .expireAfterWrite(config.getDocCountTtlSeconds(), TimeUnit.SECONDS)
+            .build();
+    }
+
+    public boolean hasDocs(Long userId, Long roleId) {
+        if (userId == null || roleId == null) {
+            return false;
+        }
+        try {
+            return counts.get(keyOf(userId, roleId), () -> docMapper.countByUserIdAndRoleId(userId, roleId)) > 0;
+        } catch (ExecutionException | RuntimeException e) {
+            log.warn("查询用户文档数失败，按有文档处理: userId={}, roleId={}", userId, roleId, e);
+            return true;
+        }
+    }
+
+    public void invalidate(Long userId, Long roleId) {
+        counts.invalidate(keyOf(userId, roleId));
+    }
+
+    private String keyOf(Long userId, Long roleId) {
+        return userId + ":" + roleId;
+    }
+}
@@ -0,0 +1,26 @@
+package com.tripdog.ai.embedding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 查询向量缓存配置，只缓存对话中的查询，文档入库不经过缓存
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.embedding-cache")
+public class EmbeddingCacheConfig {
+    /** 是否开启 */
+    private boolean enabled = true;
+    /** 本节点缓存的最大条数（按最近使用淘汰） */
+    private long maxEntries = 10000;
+    /** 超过该字数的文本不缓存，长文本很少重复 */
+    private int maxTextChars = 500;
+    /** 是否启用 Redis 二级缓存，多节点共享 */
+    private boolean redisEnabled = false;
+    /** Redis 中向量的过期时间（分钟） */
+    private long redisTtlMinutes = 1440;
+    /** Redis key 前缀 */
+    private String redisKeyPrefix = "chat:embedding:";
+}
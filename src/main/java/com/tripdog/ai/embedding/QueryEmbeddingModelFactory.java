@@ -0,0 +1,43 @@
+package com.tripdog.ai.embedding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 对话查询使用的向量模型：chat.embedding-cache.enabled 开启时为带缓存的 {@link CachingEmbeddingModel}，
+ * 否则直接返回 DashScope 向量模型。文档入库仍使用原始模型，不占用缓存。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QueryEmbeddingModelFactory {
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingCacheConfig config;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+    @Value("${langchain4j.community.dashscope.embedding-model.model-name:embedding}")
+    private String modelName;
+    private EmbeddingModel model;
+
+    @PostConstruct
+    void init() {
+        if (!config.isEnabled()) {
+            model = embeddingModel;
+            return;
+        }
+        model = new CachingEmbeddingModel(embeddingModel, modelName, config,
+            config.isRedisEnabled() ? stringRedisTemplate : null, meterRegistry);
+        log.info("查询向量缓存已开启: model={}, maxEntries={}, redis={}", modelName, config.getMaxEntries(), config.isRedisEnabled());
+    }
+
+    public EmbeddingModel getModel() {
+        return model;
+    }
+}
@@ -0,0 +1,22 @@
+package com.tripdog.ai.embedding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 对话检索配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.retrieval")
+public class RetrievalConfig {
+    /** 用户在该角色下没有文档时跳过检索（不计算向量、不查 pgvector） */
+    private boolean skipWhenNoDocs = true;
+    /** 去掉空白后少于该字数、或不含任何文字数字的消息不检索 */
+    private int minQueryChars = 2;
+    /** 用户文档数缓存时间（秒），本节点上传/删除文档时立即失效 */
+    private long docCountTtlSeconds = 300;
+    /** 用户文档数缓存的最大条数 */
+    private long maxDocCountEntries = 100000;
+}
@@ -1,22 +1,24 @@
 package com.tripdog.ai.embedding;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.springframework.context.annotation.Configuration;
 
+import com.tripdog.ai.metrics.ChatMetrics;
+import com.tripdog.ai.metrics.TimedEmbeddingModel;
+import com.tripdog.ai.metrics.TimedEmbeddingStore;
 import com.tripdog.common.utils.ThreadLocalUtils;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
 
 /**
  * @author: iohw
  * @date: 2025/9/26 14:21
- * @description:
+ * @description: 文档检索器，全局一个实例；按角色、用户过滤的条件在每次查询时从调用线程的上下文读取
+ * （单查询单检索器时 DefaultRetrievalAugmentor 在调用线程内检索）；向量计算与检索耗时分别记录为 embedding、retrieval 阶段，
+ * 查询向量经过缓存，重复的问题不再调用远程向量模型
  */
 @Configuration
 @RequiredArgsConstructor
@@ -24,26 +26,27 @@ public class RetrieverFactory {
     final String ROLE_ID = "roleId";
     final String USER_ID = "userId";
     final EmbeddingStore<TextSegment> embeddingStore;
-    final EmbeddingModel embeddingModel;
-    final Map<String, EmbeddingStoreContentRetriever> cache = new HashMap<>();
-
-    public EmbeddingStoreContentRetriever getRetriever() {
-        Long userId = (Long) ThreadLocalUtils.get(USER_ID);
-        Long roleId = (Long) ThreadLocalUtils.get(ROLE_ID);
-        String k = roleId + ":" + userId;
-        if(cache.containsKey(k)) {
-            return cache.get(k);
-        }
+    final QueryEmbeddingModelFactory queryEmbeddingModelFactory;
+    final ChatMetrics chatMetrics;
+    private EmbeddingStoreContentRetriever retriever;
 
-        EmbeddingStoreContentRetriever retriever = EmbeddingStoreContentRetriever.builder()
-            .embeddingStore(embeddingStore)
-            .embeddingModel(embeddingModel)
+    @PostConstruct
+    void init() {
+        retriever = EmbeddingStoreContentRetriever.builder()
+            .embeddingStore(new TimedEmbeddingStore<>(embeddingStore, chatMetrics))
+            .embeddingModel(new TimedEmbeddingModel(queryEmbeddingModelFactory.getModel(), chatMetrics))
             .maxResults(10) //todo 配置抽离
             .minScore(0.8)
-            .filter(metadataKey(ROLE_ID).isEqualTo(roleId)
-                .and(metadataKey(USER_ID).isEqualTo(userId)))
+            .dynamicFilter(query -> {
+                Long userId = (Long) ThreadLocalUtils.get(USER_ID);
+                Long roleId = (Long) ThreadLocalUtils.get(ROLE_ID);
+                return metadataKey(ROLE_ID).isEqualTo(roleId)
+                    .and(metadataKey(USER_ID).isEqualTo(userId));
+            })
             .build();
-        cache.put(k, retriever);
+    }
+
+    public EmbeddingStoreContentRetriever getRetriever() {
         return retriever;
     }
 }
@@ -25,7 +25,7 @@ public class McpClientFactory {
     private String searchMcpLink;
     private static final Map<String, McpClient> map = new HashMap<>();
 
-    public McpClient getMcpClient(String k) {
+    public synchronized McpClient getMcpClient(String k) {
         if(map.containsKey(k)) {
             return map.get(k);
         }
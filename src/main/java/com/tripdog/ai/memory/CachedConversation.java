@@ -0,0 +1,82 @@
+package com.tripdog.ai.memory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.tripdog.model.entity.ConversationSummaryDO;
+
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+/**
+ * 单个会话已物化的上下文
+ * 读取返回快照，写入只做追加或摘要折叠，同一会话的并发访问通过对象锁串行；
+ * 总token数随增删增量维护，读取时无需重新求和
+ */
+class CachedConversation {
+    private ChatMemoryEntry system;
+    private ConversationSummaryDO summary;
+    private int summaryTokens;
+    private final List<ChatMemoryEntry> entries;
+    private int tokens;
+
+    CachedConversation(ConversationContext context) {
+        this.system = context.getSystem();
+        this.summary = context.getSummary();
+        this.summaryTokens = context.getSummaryTokens();
+        this.entries = new ArrayList<>(context.getEntries());
+        this.tokens = context.getTokens();
+    }
+
+    synchronized ConversationContext snapshot() {
+        return new ConversationContext(system, summary, new ArrayList<>(entries), summaryTokens, tokens);
+    }
+
+    /**
+     * 追加消息，超过 maxMessages 时从最旧的消息开始裁剪，并保证裁剪后以用户消息开头；
+     * 新的系统提示词即新的检查点，与数据库加载规则一致，丢弃之前的摘要和消息
+     */
+    synchronized void append(ChatMemoryEntry entry, int maxMessages) {
+        if (entry.getMessage() instanceof SystemMessage) {
+            system = entry;
+            summary = null;
+            summaryTokens = 0;
+            entries.clear();
+            tokens = entry.getTokens();
+            return;
+        }
+        entries.add(entry);
+        tokens += entry.getTokens();
+        if (entries.size() <= maxMessages) {
+            return;
+        }
+        while (entries.size() > maxMessages) {
+            tokens -= entries.removeFirst().getTokens();
+        }
+        while (entries.size() > 1 && !(entries.getFirst().getMessage() instanceof UserMessage)) {
+            tokens -= entries.removeFirst().getTokens();
+        }
+    }
+
+    /**
+     * 应用新摘要，移除已被摘要覆盖（ID不大于检查点）的消息；
+     * 后台摘要期间会话已被重置（系统提示词晚于摘要范围）时忽略该摘要
+     */
+    synchronized void applySummary(ConversationSummaryDO newSummary, int newSummaryTokens, long coveredUntilId) {
+        if (system != null && (system.getId() == null || system.getId() > coveredUntilId)) {
+            return;
+        }
+        tokens += newSummaryTokens - summaryTokens;
+        summary = newSummary;
+        summaryTokens = newSummaryTokens;
+        Iterator<ChatMemoryEntry> it = entries.iterator();
+        while (it.hasNext()) {
+            ChatMemoryEntry e = it.next();
+            if (e.getId() != null && e.getId() <= coveredUntilId) {
+                tokens -= e.getTokens();
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.tripdog.ai.memory;
+
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.google.common.reflect.TypeToken;
+import com.tripdog.common.Constants;
+import com.tripdog.common.utils.JsonUtil;
+import com.tripdog.model.entity.ChatHistoryDO;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 聊天记录行与 ChatMessage 的转换
+ * 数据库加载、缓存追加、Redis 热数据读取共用，保证各处还原出的上下文一致
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatHistoryConverter {
+    private final LocalQwenTokenCountEstimator tokenCountEstimator;
+
+    /**
+     * 转换为缓存条目，无法识别的角色返回null
+     */
+    public ChatMemoryEntry toEntry(ChatHistoryDO d) {
+        ChatMessage message = toChatMessage(d);
+        if (message == null) {
+            return null;
+        }
+        Integer tokens = d.getInputTokens() != null ? d.getInputTokens() : d.getOutputTokens();
+        if (tokens == null) {
+            // 历史数据未记录token数，加载时补算
+            tokens = tokenCountEstimator.estimateTokenCountInMessage(message);
+        } else {
+            tokenCountEstimator.remember(message, tokens);
+        }
+        return new ChatMemoryEntry(d, message, tokens);
+    }
+
+    /**
+     * 将聊天记录还原为 ChatMessage
+     */
+    public ChatMessage toChatMessage(ChatHistoryDO d) {
+        // 上下文使用检索增强后的内容
+        String content = StringUtils.hasText(d.getEnhancedContent()) ? d.getEnhancedContent() : d.getContent();
+
+        switch (d.getRole()) {
+            case Constants.USER:
+                return UserMessage.from(content);
+            case Constants.ASSISTANT:
+                if(StringUtils.hasText(d.getToolExecResult())) {
+                    // String json = d.getToolCall();
+                    // ToolExecutionRequest toolCall = JsonUtil.fromJson(json, ToolExecutionRequest.class);
+                    // ToolExecutionResultMessage.toolExecutionResultMessage(toolCall,d.getToolExecResult());
+                    return ToolExecutionResultMessage.from("id","toolName",d.getToolExecResult());
+                }
+                if(StringUtils.hasText(d.getToolCall())) {
+                    TypeToken<List<ToolExecutionRequest>> toolCalls = new TypeToken<>() {};
+                    String toolCallJson = d.getToolCall();
+                    return AiMessage.from(JsonUtil.fromJsonList(toolCallJson, toolCalls));
+                }
+                return AiMessage.from(content);
+            case Constants.SYSTEM:
+                return SystemMessage.from(content);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.tripdog.ai.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Component;
+
+import com.tripdog.ai.metrics.ChatMetrics;
+import com.tripdog.mapper.ChatHistoryMapper;
+import com.tripdog.model.entity.ChatHistoryDO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 聊天记录异步批量写入（write-behind）
+ * 消息先进入内存队列，由单个刷盘线程按批量大小或时间间隔合并为多行插入。
+ * 单线程按入队顺序写出，保证同一会话内消息顺序；读库前调用 {@link #flush()} 可读到自己的写入；
+ * 应用关闭时会把队列中剩余消息全部写出。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatHistoryWriteBehind {
+    private final ChatHistoryMapper chatHistoryMapper;
+    private final WriteBehindConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ChatMetrics chatMetrics;
+    private final ConversationContextCache chatMemoryCache;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private BlockingQueue<ChatHistoryDO> queue;
+    private ScheduledExecutorService flusher;
+    private Counter batchCounter;
+    private Counter rowCounter;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingQueue<>(config.getQueueCapacity());
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-history-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, config.getFlushIntervalMs(), config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+
+        Gauge.builder("chat.history.write.queue", queue, BlockingQueue::size)
+            .description("等待落库的聊天记录数")
+            .register(meterRegistry);
+        batchCounter = Counter.builder("chat.history.write.batches").register(meterRegistry);
+        rowCounter = Counter.builder("chat.history.write.rows").register(meterRegistry);
+        droppedCounter = Counter.builder("chat.history.write.dropped")
+            .description("逐条重试后仍写入失败、被丢弃的聊天记录数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 提交一条聊天记录
+     */
+    public void write(ChatHistoryDO chatHistory) {
+        if (!config.isEnabled()) {
+            chatMetrics.timeStage(ChatMetrics.PERSISTENCE, () -> chatHistoryMapper.insert(chatHistory));
+            return;
+        }
+        if (!queue.offer(chatHistory)) {
+            // 队列已满：调用线程先同步刷盘再入队
+            log.warn("聊天记录写入队列已满，同步刷盘, queueSize={}", queue.size());
+            flush();
+            try {
+                queue.put(chatHistory);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("聊天记录入队被中断", e);
+            }
+        }
+        if (queue.size() >= config.getBatchSize()) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 同步写出当前队列中的全部记录
+     * 队列为空时也先获取锁：刷盘线程可能已取走一批、仍在写库，等它提交后返回才能保证读到自己的写入
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<ChatHistoryDO> batch = new ArrayList<>(config.getBatchSize());
+            while (queue.drainTo(batch, config.getBatchSize()) > 0) {
+                insertBatch(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void insertBatch(List<ChatHistoryDO> batch) {
+        long start = System.nanoTime();
+        int dropped = 0;
+        try {
+            chatHistoryMapper.insertBatch(batch);
+        } catch (Exception e) {
+            // 批量失败时逐条重试，避免一条坏数据拖累整批；逐条写入沿用消息自身的创建时间
+            log.error("聊天记录批量写入失败，逐条重试, size={}", batch.size(), e);
+            for (ChatHistoryDO chatHistory : batch) {
+                try {
+                    chatHistoryMapper.insert(chatHistory);
+                } catch (Exception ex) {
+                    // 重试仍失败的多为坏数据，不再重新入队；缓存中已有这条消息，失效后下次从数据库回源，与库中保持一致
+                    log.error("聊天记录写入失败，已丢弃, conversationId={}", chatHistory.getConversationId(), ex);
+                    chatMemoryCache.invalidate(chatHistory.getConversationId());
+                    dropped++;
+                }
+            }
+        }
+        chatMetrics.recordStage(ChatMetrics.PERSISTENCE, System.nanoTime() - start);
+        batchCounter.increment();
+        rowCounter.increment(batch.size() - dropped);
+        if (dropped > 0) {
+            droppedCounter.increment(dropped);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("聊天记录定时刷盘异常", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+        log.info("聊天记录写入队列已清空");
+    }
+}
@@ -0,0 +1,96 @@
+package com.tripdog.ai.memory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.tripdog.model.entity.ConversationSummaryDO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 会话记忆进程内缓存（chat.memory.tier=local，默认）
+ * 缓存每个会话从 t_chat_history 物化出的上下文，命中时读路径不再访问MySQL；
+ * 新消息落库后增量追加，容量与空闲时间受 {@link ChatMemoryCacheConfig} 约束。
+ * 命中/未命中/淘汰等指标以 chat.memory.cache 前缀注册到 Micrometer。
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.memory", name = "tier", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMemoryCache implements ConversationContextCache {
+    private final ChatMemoryCacheConfig config;
+    private final ChatMemoryConfig chatMemoryConfig;
+    private final MeterRegistry meterRegistry;
+    private Cache<String, CachedConversation> cache;
+
+    @PostConstruct
+    void init() {
+        cache = CacheBuilder.newBuilder()
+            .maximumSize(config.getMaxConversations())
+            .expireAfterAccess(config.getExpireAfterAccessMinutes(), TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "chat.memory.cache");
+    }
+
+    /**
+     * 获取会话上下文快照，未命中时通过 loader 回源并放入缓存
+     */
+    @Override
+    public ConversationContext getOrLoad(String conversationId, Supplier<ConversationContext> loader) {
+        if (!config.isEnabled()) {
+            return loader.get();
+        }
+        try {
+            return cache.get(conversationId, () -> new CachedConversation(loader.get())).snapshot();
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException("加载会话记忆失败: " + conversationId, e.getCause());
+        }
+    }
+
+    /**
+     * 向已缓存的会话追加一条消息，与数据库加载保持同样的 loadLimit 窗口；
+     * 未缓存时忽略，下次读取会从数据库加载
+     */
+    @Override
+    public void append(String conversationId, ChatMemoryEntry entry) {
+        if (!config.isEnabled() || entry == null) {
+            return;
+        }
+        CachedConversation conversation = cache.getIfPresent(conversationId);
+        if (conversation != null) {
+            conversation.append(entry, chatMemoryConfig.getLoadLimit());
+        }
+    }
+
+    /**
+     * 摘要生成后折叠已缓存会话中被覆盖的消息
+     */
+    @Override
+    public void applySummary(String conversationId, ConversationSummaryDO summary, int summaryTokens, long coveredUntilId) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        CachedConversation conversation = cache.getIfPresent(conversationId);
+        if (conversation != null) {
+            conversation.applySummary(summary, summaryTokens, coveredUntilId);
+        }
+    }
+
+    @Override
+    public void invalidate(String conversationId) {
+        cache.invalidate(conversationId);
+        log.debug("会话记忆缓存已失效: {}", conversationId);
+    }
+}
@@ -0,0 +1,20 @@
+package com.tripdog.ai.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 会话记忆进程内缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.memory.cache")
+public class ChatMemoryCacheConfig {
+    /** 是否启用缓存，关闭后每次都回源数据库 */
+    private boolean enabled = true;
+    /** 最多缓存的会话数，超出后按LRU淘汰 */
+    private int maxConversations = 1000;
+    /** 会话空闲多久（分钟）后淘汰 */
+    private int expireAfterAccessMinutes = 30;
+}
@@ -0,0 +1,20 @@
+package com.tripdog.ai.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 会话记忆加载配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.memory")
+public class ChatMemoryConfig {
+    /** 从检查点之后最多加载/保留的消息条数（不含系统提示词） */
+    private int loadLimit = 100;
+    /** 会话上下文热数据层：local 进程内缓存；redis 多节点共享（见 {@link RedisChatMemoryConfig}） */
+    private String tier = "local";
+    /** 单次请求的上下文token上限，记忆可用预算 = 该值 - 角色 max_tokens（为回复预留） */
+    private int maxContextTokens = 8192;
+}
@@ -0,0 +1,23 @@
+package com.tripdog.ai.memory;
+
+import com.tripdog.model.entity.ChatHistoryDO;
+
+import dev.langchain4j.data.message.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 缓存中的一条消息：聊天记录行、还原后的 ChatMessage 及其token数
+ * 异步落库时 history 的ID在批量插入后回填
+ */
+@Getter
+@AllArgsConstructor
+public class ChatMemoryEntry {
+    private final ChatHistoryDO history;
+    private final ChatMessage message;
+    private final int tokens;
+
+    public Long getId() {
+        return history.getId();
+    }
+}
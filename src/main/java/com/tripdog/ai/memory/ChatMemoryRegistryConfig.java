@@ -0,0 +1,24 @@
+package com.tripdog.ai.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ChatMemory 实例注册表配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.memory.registry")
+public class ChatMemoryRegistryConfig {
+    /** 最多保留的 ChatMemory 实例数，超出后按LRU淘汰 */
+    private int maxMemories = 10000;
+    /** 实例空闲多久（分钟）后淘汰，再次访问时重新创建 */
+    private int expireAfterAccessMinutes = 30;
+    /**
+     * 单个实例在注册表中估算占用的堆内存（字节），用于 chat.memory.registry.estimated.bytes；
+     * 包括 TokenBudgetChatMemory 对象、注册表条目（Guava 缓存节点、访问队列指针与时间戳）及所属角色ID，
+     * 不含会话ID字符串（按实际长度另计）和消息内容（在 ChatMemoryStore 中）。换用其他 JVM 或压缩指针关闭时可按堆转储调整
+     */
+    private long estimatedBytesPerMemory = 160;
+}
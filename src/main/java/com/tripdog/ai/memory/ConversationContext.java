@@ -0,0 +1,38 @@
+package com.tripdog.ai.memory;
+
+import java.util.List;
+
+import com.tripdog.model.entity.ConversationSummaryDO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 会话上下文快照：系统提示词 + 最近一次摘要 + 摘要检查点之后的原始消息
+ */
+@Getter
+@AllArgsConstructor
+public class ConversationContext {
+    /** 系统提示词，可能为空 */
+    private final ChatMemoryEntry system;
+    /** 最近一次摘要，可能为空 */
+    private final ConversationSummaryDO summary;
+    /** 检查点之后的原始消息，按时间正序 */
+    private final List<ChatMemoryEntry> entries;
+    /** 最近一次摘要的token数 */
+    private final int summaryTokens;
+    /** 上下文总token数：系统提示词 + 摘要 + 原始消息 */
+    private final int tokens;
+
+    /**
+     * 按各部分已记录的token数求和构建快照，不重新分词
+     */
+    public static ConversationContext of(ChatMemoryEntry system, ConversationSummaryDO summary, int summaryTokens,
+                                         List<ChatMemoryEntry> entries) {
+        int tokens = summaryTokens + (system == null ? 0 : system.getTokens());
+        for (ChatMemoryEntry entry : entries) {
+            tokens += entry.getTokens();
+        }
+        return new ConversationContext(system, summary, entries, summaryTokens, tokens);
+    }
+}
@@ -0,0 +1,29 @@
+package com.tripdog.ai.memory;
+
+import java.util.function.Supplier;
+
+import com.tripdog.model.entity.ConversationSummaryDO;
+
+/**
+ * 会话上下文热数据层，位于 t_chat_history 冷数据之前
+ * 由 chat.memory.tier 选择实现：local 为进程内缓存，redis 为多节点共享的 Redis 列表
+ */
+public interface ConversationContextCache {
+
+    /**
+     * 获取会话上下文快照，未命中时通过 loader 从数据库回源并放入热数据层
+     */
+    ConversationContext getOrLoad(String conversationId, Supplier<ConversationContext> loader);
+
+    /**
+     * 追加一条新写入的消息；会话不在热数据层时忽略，下次读取会回源
+     */
+    void append(String conversationId, ChatMemoryEntry entry);
+
+    /**
+     * 摘要生成后折叠被覆盖的消息
+     */
+    void applySummary(String conversationId, ConversationSummaryDO summary, int summaryTokens, long coveredUntilId);
+
+    void invalidate(String conversationId);
+}
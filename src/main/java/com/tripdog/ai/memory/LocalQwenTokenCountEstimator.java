@@ -0,0 +1,94 @@
+package com.tripdog.ai.memory;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.alibaba.dashscope.tokenizers.Tokenizer;
+import com.alibaba.dashscope.tokenizers.TokenizerFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+/**
+ * 基于本地通义千问分词器的token估算（不调用远程接口）
+ * 只统计文本部分：用户消息的图片等非文本内容、消息角色等格式开销不计入；
+ * 按消息对象（弱引用、按引用比较）缓存结果，缓存中的消息在各轮之间复用时不再重复分词
+ */
+@Component
+public class LocalQwenTokenCountEstimator implements TokenCountEstimator {
+    private final Tokenizer tokenizer = TokenizerFactory.qwen();
+    private final Cache<ChatMessage, Integer> messageTokens = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * 登记已知的消息token数（如写入时已计算、从数据库读出的记录），避免再次分词
+     */
+    public void remember(ChatMessage message, int tokens) {
+        messageTokens.put(message, tokens);
+    }
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (!StringUtils.hasText(text)) {
+            return 0;
+        }
+        return tokenizer.encodeOrdinary(text).size();
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        Integer cached = messageTokens.getIfPresent(message);
+        if (cached != null) {
+            return cached;
+        }
+        int tokens = count(message);
+        messageTokens.put(message, tokens);
+        return tokens;
+    }
+
+    private int count(ChatMessage message) {
+        if (message instanceof SystemMessage systemMessage) {
+            return estimateTokenCountInText(systemMessage.text());
+        }
+        if (message instanceof UserMessage userMessage) {
+            int tokens = 0;
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    tokens += estimateTokenCountInText(textContent.text());
+                }
+            }
+            return tokens;
+        }
+        if (message instanceof AiMessage aiMessage) {
+            int tokens = estimateTokenCountInText(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    tokens += estimateTokenCountInText(request.name());
+                    tokens += estimateTokenCountInText(request.arguments());
+                }
+            }
+            return tokens;
+        }
+        if (message instanceof ToolExecutionResultMessage toolMessage) {
+            return estimateTokenCountInText(toolMessage.text());
+        }
+        return 0;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,18 @@
+package com.tripdog.ai.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis 会话热数据配置（chat.memory.tier=redis 时生效）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.memory.redis")
+public class RedisChatMemoryConfig {
+    /** key前缀，实际key为 前缀 + 会话ID + :messages / :meta */
+    private String keyPrefix = "chat:memory:";
+    /** 会话热数据空闲多久（分钟）后过期，过期后下次读取从数据库回源 */
+    private int ttlMinutes = 120;
+}
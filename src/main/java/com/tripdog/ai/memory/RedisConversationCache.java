@@ -0,0 +1,210 @@
+package com.tripdog.ai.memory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tripdog.model.entity.ChatHistoryDO;
+import com.tripdog.model.entity.ConversationSummaryDO;
+
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 会话记忆 Redis 热数据（chat.memory.tier=redis）
+ * 每个会话两个key：:messages 为检查点之后最近 loadLimit 条消息的列表（RPUSH 追加、LTRIM 裁剪），
+ * :meta 为哈希，保存系统提示词、最近一次摘要及其token数。多个节点共享同一份热数据，
+ * 读取时 HGETALL 与 LRANGE 走同一个管道，一次往返即可拿到完整上下文；未命中时从 t_chat_history 回源并写回。
+ * 异步落库时追加的消息还没有ID，直接按写入顺序追加，不等待刷盘；摘要折叠需要ID时刷盘后从数据库回查（见 CompressionService），
+ * 摘要折叠、会话重置时直接删除热数据，下次读取重新回源。
+ * Redis 不可用时退化为直接读数据库。
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.memory", name = "tier", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisConversationCache implements ConversationContextCache {
+    private static final String SYSTEM = "system";
+    private static final String SUMMARY = "summary";
+    private static final String SUMMARY_TOKENS = "summaryTokens";
+    /** 热数据已建立的标记，系统提示词和摘要都可能为空 */
+    private static final String LOADED = "loaded";
+    /** 仅在热数据存在时追加，按 loadLimit 裁剪并续期 */
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[2]) == 0 then return 0 end\n"
+            + "redis.call('RPUSH', KEYS[1], ARGV[1])\n"
+            + "redis.call('LTRIM', KEYS[1], -tonumber(ARGV[2]), -1)\n"
+            + "redis.call('PEXPIRE', KEYS[1], ARGV[3])\n"
+            + "redis.call('PEXPIRE', KEYS[2], ARGV[3])\n"
+            + "return 1", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisChatMemoryConfig config;
+    private final ChatMemoryConfig chatMemoryConfig;
+    private final ChatHistoryConverter chatHistoryConverter;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Override
+    public ConversationContext getOrLoad(String conversationId, Supplier<ConversationContext> loader) {
+        try {
+            ConversationContext cached = read(conversationId);
+            if (cached != null) {
+                return cached;
+            }
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("读取Redis会话热数据失败，回源数据库: conversationId={}", conversationId, e);
+            return loader.get();
+        }
+
+        ConversationContext context = loader.get();
+        try {
+            write(conversationId, context);
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("写入Redis会话热数据失败: conversationId={}", conversationId, e);
+        }
+        return context;
+    }
+
+    @Override
+    public void append(String conversationId, ChatMemoryEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (entry.getMessage() instanceof SystemMessage) {
+            // 新的检查点：旧的摘要和消息失效，下次读取从数据库回源
+            invalidate(conversationId);
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(APPEND_SCRIPT, List.of(messagesKey(conversationId), metaKey(conversationId)),
+                objectMapper.writeValueAsString(entry.getHistory()),
+                String.valueOf(chatMemoryConfig.getLoadLimit()),
+                String.valueOf(TimeUnit.MINUTES.toMillis(config.getTtlMinutes())));
+        } catch (DataAccessException | JsonProcessingException e) {
+            // 追加失败的热数据会缺消息，直接删除
+            log.warn("追加Redis会话热数据失败: conversationId={}", conversationId, e);
+            invalidate(conversationId);
+        }
+    }
+
+    @Override
+    public void applySummary(String conversationId, ConversationSummaryDO summary, int summaryTokens, long coveredUntilId) {
+        invalidate(conversationId);
+    }
+
+    @Override
+    public void invalidate(String conversationId) {
+        try {
+            stringRedisTemplate.delete(List.of(messagesKey(conversationId), metaKey(conversationId)));
+        } catch (DataAccessException e) {
+            log.error("删除Redis会话热数据失败: conversationId={}", conversationId, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConversationContext read(String conversationId) throws JsonProcessingException {
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForHash().entries(metaKey(conversationId));
+                ops.opsForList().range(messagesKey(conversationId), 0, -1);
+                return null;
+            }
+        });
+        Map<Object, Object> meta = (Map<Object, Object>) results.get(0);
+        List<Object> messages = (List<Object>) results.get(1);
+        if (meta == null || !meta.containsKey(LOADED)) {
+            return null;
+        }
+
+        ChatMemoryEntry system = null;
+        if (meta.get(SYSTEM) != null) {
+            system = chatHistoryConverter.toEntry(objectMapper.readValue((String) meta.get(SYSTEM), ChatHistoryDO.class));
+        }
+        ConversationSummaryDO summary = null;
+        int summaryTokens = 0;
+        if (meta.get(SUMMARY) != null) {
+            summary = objectMapper.readValue((String) meta.get(SUMMARY), ConversationSummaryDO.class);
+            summaryTokens = Integer.parseInt((String) meta.get(SUMMARY_TOKENS));
+        }
+
+        boolean truncated = messages.size() >= chatMemoryConfig.getLoadLimit();
+        List<ChatMemoryEntry> entries = new ArrayList<>(messages.size());
+        for (Object json : messages) {
+            ChatMemoryEntry entry = chatHistoryConverter.toEntry(objectMapper.readValue((String) json, ChatHistoryDO.class));
+            if (entry == null) {
+                continue;
+            }
+            // 裁剪后从第一条用户消息开始，与数据库加载规则一致
+            if (truncated && entries.isEmpty() && !(entry.getMessage() instanceof UserMessage)) {
+                continue;
+            }
+            entries.add(entry);
+        }
+        return ConversationContext.of(system, summary, summaryTokens, entries);
+    }
+
+    private void write(String conversationId, ConversationContext context) throws JsonProcessingException {
+        Map<String, String> meta = new HashMap<>();
+        meta.put(LOADED, "1");
+        if (context.getSystem() != null) {
+            meta.put(SYSTEM, objectMapper.writeValueAsString(context.getSystem().getHistory()));
+        }
+        if (context.getSummary() != null) {
+            meta.put(SUMMARY, objectMapper.writeValueAsString(context.getSummary()));
+            meta.put(SUMMARY_TOKENS, String.valueOf(context.getSummaryTokens()));
+        }
+        List<String> messages = new ArrayList<>(context.getEntries().size());
+        for (ChatMemoryEntry entry : context.getEntries()) {
+            messages.add(objectMapper.writeValueAsString(entry.getHistory()));
+        }
+
+        String messagesKey = messagesKey(conversationId);
+        String metaKey = metaKey(conversationId);
+        long ttl = config.getTtlMinutes();
+        stringRedisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.multi();
+                ops.delete(List.of(messagesKey, metaKey));
+                if (!messages.isEmpty()) {
+                    ops.opsForList().rightPushAll(messagesKey, messages);
+                }
+                ops.opsForHash().putAll(metaKey, meta);
+                ops.expire(messagesKey, ttl, TimeUnit.MINUTES);
+                ops.expire(metaKey, ttl, TimeUnit.MINUTES);
+                return ops.exec();
+            }
+        });
+    }
+
+    private String messagesKey(String conversationId) {
+        return config.getKeyPrefix() + conversationId + ":messages";
+    }
+
+    private String metaKey(String conversationId) {
+        return config.getKeyPrefix() + conversationId + ":meta";
+    }
+}
@@ -0,0 +1,105 @@
+package com.tripdog.ai.memory;
+
+import java.util.List;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按token预算裁剪的会话记忆
+ * 超出预算时从最早的一轮对话（用户消息及其后的工具调用、回复）开始整轮淘汰，
+ * 系统提示词与当前这一轮始终保留；淘汰只影响本次请求的上下文，不删除已落库的聊天记录
+ */
+@Slf4j
+public class TokenBudgetChatMemory implements ChatMemory {
+    private final Object id;
+    private final ChatMemoryStore store;
+    private final LocalQwenTokenCountEstimator tokenCountEstimator;
+    private final int maxTokens;
+
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store,
+                                 LocalQwenTokenCountEstimator tokenCountEstimator, int maxTokens) {
+        this.id = id;
+        this.store = store;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxTokens = maxTokens;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = messages();
+        if (message instanceof SystemMessage) {
+            SystemMessage current = findSystemMessage(messages);
+            if (message.equals(current)) {
+                return;
+            }
+            if (current != null) {
+                messages.remove(current);
+            }
+        }
+        messages.add(message);
+        ensureCapacity(messages);
+        store.updateMessages(id, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = store.getMessages(id);
+        ensureCapacity(messages);
+        return messages;
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    public int maxTokens() {
+        return maxTokens;
+    }
+
+    private void ensureCapacity(List<ChatMessage> messages) {
+        int tokens = tokenCountEstimator.estimateTokenCountInMessages(messages);
+        int evicted = 0;
+        while (tokens > maxTokens) {
+            int start = 0;
+            while (start < messages.size() && messages.get(start) instanceof SystemMessage) {
+                start++;
+            }
+            int next = start + 1;
+            while (next < messages.size() && !(messages.get(next) instanceof UserMessage)) {
+                next++;
+            }
+            if (next >= messages.size()) {
+                // 只剩当前这一轮，不再淘汰
+                break;
+            }
+            for (int i = start; i < next; i++) {
+                tokens -= tokenCountEstimator.estimateTokenCountInMessage(messages.remove(start));
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("会话记忆超出token预算，淘汰最早的{}条消息: id={}, tokens={}, maxTokens={}",
+                evicted, id, tokens, maxTokens);
+        }
+    }
+
+    private SystemMessage findSystemMessage(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.tripdog.ai.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天记录异步批量落库配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.memory.write-behind")
+public class WriteBehindConfig {
+    /** 是否启用异步批量写入，关闭后每条消息同步插入 */
+    private boolean enabled = true;
+    /** 单次批量插入的最大行数，队列积压达到该值时立即刷盘 */
+    private int batchSize = 50;
+    /** 定时刷盘间隔（毫秒） */
+    private long flushIntervalMs = 200;
+    /** 待写队列容量，写满后调用线程同步刷盘形成背压 */
+    private int queueCapacity = 10000;
+}
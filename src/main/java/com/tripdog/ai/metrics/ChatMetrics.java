@@ -0,0 +1,157 @@
+package com.tripdog.ai.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 对话耗时指标
+ * - 每轮（按角色 roleId）：chat.turn.ttft 首个token耗时、chat.turn.duration 整轮耗时（tag outcome）、
+ *   chat.turn.tokens.per.second 输出速率，均从服务端收到请求开始计时
+ * - 各阶段：chat.turn.stage（tag stage），见 {@link #HISTORY_LOAD} 等常量
+ * - 工具调用：chat.turn.tool（tag tool）
+ * 均发布百分位直方图，可在 Prometheus 中按 histogram_quantile 计算 P50/P99。
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatMetrics {
+    /** 从缓存或数据库加载会话上下文 */
+    public static final String HISTORY_LOAD = "history_load";
+    /** 上下文压缩（截断或同步摘要） */
+    public static final String COMPRESSION = "compression";
+    /** 计算文本向量 */
+    public static final String EMBEDDING = "embedding";
+    /** pgvector 相似度检索 */
+    public static final String RETRIEVAL = "retrieval";
+    /** 聊天记录落库 */
+    public static final String PERSISTENCE = "persistence";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> toolTimers = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一个阶段的耗时
+     */
+    public void recordStage(String stage, long nanos) {
+        stageTimers.computeIfAbsent(stage, s -> Timer.builder("chat.turn.stage")
+                .description("对话各阶段耗时")
+                .tag("stage", s)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 执行并记录一个阶段的耗时（无论成功与否）
+     */
+    public <T> T timeStage(String stage, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void recordTool(String tool, long nanos) {
+        toolTimers.computeIfAbsent(tool, t -> Timer.builder("chat.turn.tool")
+                .description("工具调用耗时")
+                .tag("tool", t)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 开始计时一轮对话
+     */
+    public TurnTimer startTurn(Long roleId) {
+        return new TurnTimer(String.valueOf(roleId), System.nanoTime());
+    }
+
+    /**
+     * 一轮对话的计时：首个token与结束各记录一次
+     */
+    public class TurnTimer {
+        private final String roleId;
+        private final long startNanos;
+        private final AtomicLong firstTokenNanos = new AtomicLong();
+        private final Map<String, Long> runningTools = new ConcurrentHashMap<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private TurnTimer(String roleId, long startNanos) {
+            this.roleId = roleId;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 收到增量内容时调用，只有第一次生效
+         */
+        public void firstToken() {
+            if (firstTokenNanos.get() != 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (!firstTokenNanos.compareAndSet(0, now)) {
+                return;
+            }
+            Timer.builder("chat.turn.ttft")
+                .description("从收到请求到写出第一个token的耗时")
+                .tag("roleId", roleId)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(now - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void toolStarted(String requestId) {
+            if (requestId != null) {
+                runningTools.put(requestId, System.nanoTime());
+            }
+        }
+
+        public void toolFinished(String requestId, String tool) {
+            Long start = requestId == null ? null : runningTools.remove(requestId);
+            if (start != null) {
+                recordTool(tool, System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * 本轮结束，outputTokens 为模型输出的token数（未知时传0，不记录速率）
+         */
+        public void finish(String outcome, int outputTokens) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.nanoTime();
+            Timer.builder("chat.turn.duration")
+                .description("整轮对话耗时")
+                .tag("roleId", roleId)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(now - startNanos, TimeUnit.NANOSECONDS);
+            long firstToken = firstTokenNanos.get();
+            long generatingNanos = firstToken == 0 ? 0 : now - firstToken;
+            if (outputTokens > 0 && generatingNanos > 0) {
+                DistributionSummary.builder("chat.turn.tokens.per.second")
+                    .description("首个token之后的输出速率")
+                    .tag("roleId", roleId)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(outputTokens / (generatingNanos / 1e9));
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.tripdog.ai.metrics;
+
+import java.util.List;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+/**
+ * 记录向量计算耗时（chat.turn.stage{stage=embedding}）的 EmbeddingModel
+ */
+public class TimedEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final ChatMetrics chatMetrics;
+
+    public TimedEmbeddingModel(EmbeddingModel delegate, ChatMetrics chatMetrics) {
+        this.delegate = delegate;
+        this.chatMetrics = chatMetrics;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return chatMetrics.timeStage(ChatMetrics.EMBEDDING, () -> delegate.embedAll(textSegments));
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+}
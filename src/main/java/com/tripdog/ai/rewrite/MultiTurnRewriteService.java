@@ -26,6 +26,15 @@ public class MultiTurnRewriteService {
     private static final Pattern INDEX_REF_PATTERN = Pattern.compile("第(\\d+)[个条]", Pattern.CASE_INSENSITIVE);
 
 
+    /**
+     * 是否为依赖上一轮回答的指令（继续、换一个、第N个等），不需要读取历史即可判断
+     */
+    public boolean referencesPrevious(String userInput) {
+        String trimmed = userInput == null ? "" : userInput.trim();
+        return !trimmed.isEmpty()
+                && (CONTINUE_PATTERN.matcher(trimmed).find() || INDEX_REF_PATTERN.matcher(trimmed).find());
+    }
+
     public RewriteResult rewrite(String userInput, List<ChatMessage> recentMessages) {
         String trimmed = userInput == null ? "" : userInput.trim();
         if (trimmed.isEmpty()) {
@@ -0,0 +1,42 @@
+package com.tripdog.ai.role;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 解析后的角色配置（t_role 的 ai_setting / role_setting），不可变，可在线程间共享
+ * version 由更新时间与配置内容生成，版本不变则不重新解析
+ */
+@Getter
+@Builder
+public class RoleConfig {
+    private final Long roleId;
+    private final String code;
+    private final String name;
+    private final Integer status;
+    private final String version;
+
+    /** ai_setting.system_prompt */
+    private final String systemPrompt;
+    /** ai_setting.temperature */
+    private final double temperature;
+    /** ai_setting.max_tokens，为模型回复预留的token数 */
+    private final int maxTokens;
+    /** ai_setting.top_p */
+    private final double topP;
+    /** ai_setting.light_model_name，简单轮次使用的轻量模型，未配置时为null */
+    private final String lightModelName;
+
+    /** role_setting.personality */
+    private final List<String> personality;
+    /** role_setting.communication_style */
+    private final String communicationStyle;
+    /** role_setting.specialties */
+    private final List<String> specialties;
+    /** role_setting.emoji */
+    private final String emoji;
+    /** role_setting.catchphrases */
+    private final List<String> catchphrases;
+}
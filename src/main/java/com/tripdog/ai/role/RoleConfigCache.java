@@ -0,0 +1,130 @@
+package com.tripdog.ai.role;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.tripdog.common.utils.RoleConfigParser;
+import com.tripdog.mapper.RoleMapper;
+import com.tripdog.model.entity.RoleDO;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 角色配置内存缓存
+ * 启动时加载全部角色并解析为 {@link RoleConfig}，聊天链路只读内存，不查 t_role、不解析JSON。
+ * t_role 只由运维直接改表，按 refreshIntervalSeconds 轮询比对版本（更新时间 + 配置内容），
+ * 只重新解析版本变化的角色；也可调用 {@link #invalidate(Long)} / {@link #refresh()} 显式失效。
+ * 角色变化时发布 {@link RoleConfigChangedEvent}。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RoleConfigCache {
+    private final RoleMapper roleMapper;
+    private final RoleConfigCacheConfig config;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<Long, RoleConfig> configs = new ConcurrentHashMap<>();
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    void init() {
+        refresh();
+        if (config.getRefreshIntervalSeconds() > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "role-config-refresher");
+                t.setDaemon(true);
+                return t;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, config.getRefreshIntervalSeconds(),
+                config.getRefreshIntervalSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取角色配置；缓存中没有时（如轮询间隔内新增的角色）查库加载，角色不存在返回null
+     */
+    public RoleConfig get(Long roleId) {
+        if (roleId == null) {
+            return null;
+        }
+        RoleConfig cached = configs.get(roleId);
+        if (cached != null) {
+            return cached;
+        }
+        RoleDO role = roleMapper.selectById(roleId);
+        if (role == null) {
+            return null;
+        }
+        RoleConfig loaded = RoleConfigParser.parse(role, versionOf(role));
+        RoleConfig previous = configs.putIfAbsent(roleId, loaded);
+        return previous != null ? previous : loaded;
+    }
+
+    /**
+     * 显式失效单个角色，下次访问时重新加载
+     */
+    public void invalidate(Long roleId) {
+        if (configs.remove(roleId) != null) {
+            eventPublisher.publishEvent(new RoleConfigChangedEvent(Set.of(roleId)));
+        }
+    }
+
+    /**
+     * 与 t_role 比对版本，重新解析有变化的角色并移除已删除的角色
+     */
+    public synchronized void refresh() {
+        try {
+            List<RoleDO> roles = roleMapper.selectRoleList(new RoleDO());
+            Set<Long> changed = new HashSet<>();
+            Set<Long> present = new HashSet<>();
+            for (RoleDO role : roles) {
+                present.add(role.getId());
+                String version = versionOf(role);
+                RoleConfig cached = configs.get(role.getId());
+                if (cached == null || !version.equals(cached.getVersion())) {
+                    configs.put(role.getId(), RoleConfigParser.parse(role, version));
+                    if (cached != null) {
+                        changed.add(role.getId());
+                    }
+                }
+            }
+            for (Long roleId : configs.keySet()) {
+                if (!present.contains(roleId)) {
+                    configs.remove(roleId);
+                    changed.add(roleId);
+                }
+            }
+            if (!changed.isEmpty()) {
+                log.info("角色配置已更新: roleIds={}", changed);
+                eventPublisher.publishEvent(new RoleConfigChangedEvent(changed));
+            }
+        } catch (Exception e) {
+            log.error("刷新角色配置失败，继续使用缓存", e);
+        }
+    }
+
+    private String versionOf(RoleDO role) {
+        return role.getUpdatedAt() + ":" + Objects.hash(role.getCode(), role.getName(), role.getStatus(),
+            role.getAiSetting(), role.getRoleSetting());
+    }
+}
@@ -0,0 +1,16 @@
+package com.tripdog.ai.role;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 角色配置缓存
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.role")
+public class RoleConfigCacheConfig {
+    /** 比对 t_role 版本的间隔（秒），直接改表后最迟在该间隔后生效；0 表示不轮询，只能显式失效 */
+    private long refreshIntervalSeconds = 30;
+}
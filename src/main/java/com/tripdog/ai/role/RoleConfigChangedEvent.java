@@ -0,0 +1,15 @@
+package com.tripdog.ai.role;
+
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 角色配置发生变化（新增、修改、删除），依赖角色配置的缓存据此失效
+ */
+@Getter
+@AllArgsConstructor
+public class RoleConfigChangedEvent {
+    private final Set<Long> roleIds;
+}
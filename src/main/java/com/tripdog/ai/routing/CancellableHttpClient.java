@@ -0,0 +1,143 @@
+package com.tripdog.ai.routing;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import dev.langchain4j.http.client.jdk.JdkHttpClientBuilder;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+/**
+ * 可中止的流式 HTTP 客户端，供 OpenAI 兼容协议的模型使用（builder 的 httpClientBuilder）
+ * 发起流式请求时取当前线程的 {@link ModelCallHandle}，把响应流登记到句柄上，句柄取消即关闭响应流、断开上游连接。
+ * langchain4j 1.5 会吞掉回调中抛出的异常并继续读取，流读取出错后还会再回调 onClose（被 SDK 当作正常结束），
+ * 因此取消后只向 SDK 交付一次 onError({@link ModelCallCancelledException})，其余事件全部丢弃。
+ * 读取响应期间句柄同样绑定在读取线程上，工具调用后的后续请求也能被中止。
+ */
+public class CancellableHttpClient implements HttpClient {
+    private final HttpClient delegate;
+
+    private CancellableHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException {
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        ModelCallHandle handle = ModelCallHandle.current();
+        if (handle == null) {
+            delegate.execute(request, parser, listener);
+            return;
+        }
+        delegate.execute(request, (body, l) -> parse(handle, parser, body, l), new CancellableListener(handle, listener));
+    }
+
+    private static void parse(ModelCallHandle handle, ServerSentEventParser parser, InputStream body,
+                              ServerSentEventListener listener) {
+        if (!handle.attach(body)) {
+            listener.onError(new ModelCallCancelledException());
+            return;
+        }
+        try (ModelCallHandle.Scope ignored = handle.bind()) {
+            parser.parse(body, listener);
+        } finally {
+            handle.detach(body);
+        }
+    }
+
+    /**
+     * 未取消时原样转发；取消后的第一个结束回调（onError 或 onClose）转为一次 onError，其余丢弃
+     */
+    private static class CancellableListener implements ServerSentEventListener {
+        private final ModelCallHandle handle;
+        private final ServerSentEventListener delegate;
+        private final AtomicBoolean terminated = new AtomicBoolean();
+
+        CancellableListener(ModelCallHandle handle, ServerSentEventListener delegate) {
+            this.handle = handle;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onOpen(SuccessfulHttpResponse response) {
+            if (!handle.isCancelled()) {
+                delegate.onOpen(response);
+            }
+        }
+
+        @Override
+        public void onEvent(ServerSentEvent event) {
+            if (!handle.isCancelled()) {
+                delegate.onEvent(event);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (!handle.isCancelled()) {
+                delegate.onError(error);
+            } else if (terminated.compareAndSet(false, true)) {
+                delegate.onError(new ModelCallCancelledException());
+            }
+        }
+
+        @Override
+        public void onClose() {
+            if (!handle.isCancelled()) {
+                delegate.onClose();
+            } else if (terminated.compareAndSet(false, true)) {
+                delegate.onError(new ModelCallCancelledException());
+            }
+        }
+    }
+
+    /**
+     * 底层使用 {@link JdkHttpClient}
+     */
+    public static class Builder implements HttpClientBuilder {
+        private final JdkHttpClientBuilder delegate = JdkHttpClient.builder();
+
+        @Override
+        public Duration connectTimeout() {
+            return delegate.connectTimeout();
+        }
+
+        @Override
+        public Builder connectTimeout(Duration timeout) {
+            delegate.connectTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return delegate.readTimeout();
+        }
+
+        @Override
+        public Builder readTimeout(Duration timeout) {
+            delegate.readTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public CancellableHttpClient build() {
+            return new CancellableHttpClient(delegate.build());
+        }
+    }
+}
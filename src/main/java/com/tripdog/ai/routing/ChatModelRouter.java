@@ -0,0 +1,87 @@
+package com.tripdog.ai.routing;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 聊天使用的流式模型：chat.routing.enabled 开启时为带对冲与降级的 {@link RoutingStreamingChatModel}，
+ * 否则直接返回 DashScope 主模型；角色配置的轻量模型按模型名创建一次后复用
+ * 备用模型与轻量模型使用 {@link CancellableHttpClient}，客户端断开时可通过 {@link ModelCallHandle} 中止生成
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatModelRouter {
+    private final StreamingChatModel primary;
+    private final ModelRoutingConfig config;
+    private final ComplexityRoutingConfig complexityConfig;
+    private final MeterRegistry meterRegistry;
+    @Value("${langchain4j.community.dashscope.streaming-chat-model.model-name:primary}")
+    private String primaryName;
+    private ScheduledExecutorService scheduler;
+    private StreamingChatModel model;
+    /** 模型名 -> 轻量模型 */
+    private final Map<String, StreamingChatModel> lightModels = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        if (!config.isEnabled()) {
+            model = primary;
+            return;
+        }
+        StreamingChatModel fallback = OpenAiStreamingChatModel.builder()
+            .baseUrl(config.getFallbackBaseUrl())
+            .apiKey(config.getFallbackApiKey())
+            .modelName(config.getFallbackModelName())
+            .timeout(Duration.ofSeconds(config.getFallbackTimeoutSeconds()))
+            .httpClientBuilder(CancellableHttpClient.builder())
+            .build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "model-hedge");
+            t.setDaemon(true);
+            return t;
+        });
+        model = new RoutingStreamingChatModel(primary, primaryName, fallback, config.getFallbackModelName(),
+            config, scheduler, meterRegistry);
+        log.info("模型路由已开启: primary={}, fallback={}, hedgeAfterMs={}",
+            primaryName, config.getFallbackModelName(), config.getHedgeAfterMs());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public StreamingChatModel getModel() {
+        return model;
+    }
+
+    /**
+     * 角色配置的轻量模型，不经过对冲
+     */
+    public StreamingChatModel getLightModel(String modelName) {
+        return lightModels.computeIfAbsent(modelName, name -> OpenAiStreamingChatModel.builder()
+            .baseUrl(complexityConfig.getLightBaseUrl())
+            .apiKey(complexityConfig.getLightApiKey())
+            .modelName(name)
+            .timeout(Duration.ofSeconds(complexityConfig.getLightTimeoutSeconds()))
+            .httpClientBuilder(CancellableHttpClient.builder())
+            .build());
+    }
+}
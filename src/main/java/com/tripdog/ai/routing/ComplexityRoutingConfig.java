@@ -0,0 +1,27 @@
+package com.tripdog.ai.routing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按问题复杂度选择模型的配置
+ * 轻量模型按角色在 ai_setting.light_model_name 中配置，通过 OpenAI 兼容协议接入（默认 DashScope 兼容模式）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.complexity-routing")
+public class ComplexityRoutingConfig {
+    /** 是否开启，关闭时所有轮次使用主模型 */
+    private boolean enabled = false;
+    /** 不超过该字数的纯文本消息才可能使用轻量模型 */
+    private int maxSimpleChars = 20;
+    /** 查询用户文档数的超时（毫秒），超时按需要主模型处理 */
+    private long classifyTimeoutMs = 500;
+    /** 轻量模型的 OpenAI 兼容接口地址 */
+    private String lightBaseUrl = "https://dashscope.aliyuncs.com/compatible-mode/v1";
+    /** 轻量模型的 API Key */
+    private String lightApiKey;
+    /** 轻量模型请求超时（秒） */
+    private long lightTimeoutSeconds = 30;
+}
@@ -0,0 +1,10 @@
+package com.tripdog.ai.routing;
+
+/**
+ * 模型调用被 {@link ModelCallHandle#cancel()} 中止，作为该次调用唯一的结束回调交给 onError
+ */
+public class ModelCallCancelledException extends RuntimeException {
+    public ModelCallCancelledException() {
+        super("模型调用已取消");
+    }
+}
@@ -0,0 +1,124 @@
+package com.tripdog.ai.routing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 一轮模型调用的取消句柄
+ * 发起调用前通过 {@link #bind()} 绑定到当前线程，经 {@link CancellableHttpClient} 发出的流式请求会登记到句柄上，
+ * 工具调用之后的后续请求在响应读取线程上发起，同样继承该句柄。
+ * {@link #cancel()} 关闭已登记的响应流（上游连接随之断开，模型停止生成），之后登记的流立即关闭；
+ * 不经过 {@link CancellableHttpClient} 的模型（如 DashScope SDK）无法中止，只能等其自然结束。
+ * 子句柄随父句柄一起取消，用于对冲时单独中止其中一路。
+ */
+@Slf4j
+public class ModelCallHandle {
+    private static final ThreadLocal<ModelCallHandle> CURRENT = new ThreadLocal<>();
+
+    private final List<Closeable> streams = new ArrayList<>(1);
+    private final List<ModelCallHandle> children = new ArrayList<>(2);
+    private boolean cancelled;
+
+    /**
+     * 当前线程绑定的句柄，没有时为null
+     */
+    public static ModelCallHandle current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 绑定到当前线程，关闭返回值时恢复之前绑定的句柄
+     */
+    public Scope bind() {
+        ModelCallHandle previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * 创建子句柄；本句柄已取消时子句柄同样处于取消状态
+     */
+    public synchronized ModelCallHandle child() {
+        ModelCallHandle child = new ModelCallHandle();
+        if (cancelled) {
+            child.cancel();
+        } else {
+            children.add(child);
+        }
+        return child;
+    }
+
+    /**
+     * 取消调用，重复调用无副作用
+     *
+     * @return 是否关闭了进行中的响应流，false 表示当前没有可中止的请求
+     */
+    public boolean cancel() {
+        List<Closeable> toClose;
+        List<ModelCallHandle> toCancel;
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            toClose = new ArrayList<>(streams);
+            toCancel = new ArrayList<>(children);
+            streams.clear();
+            children.clear();
+        }
+        boolean aborted = !toClose.isEmpty();
+        toClose.forEach(ModelCallHandle::closeQuietly);
+        for (ModelCallHandle child : toCancel) {
+            aborted |= child.cancel();
+        }
+        return aborted;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 登记一个响应流；已取消时直接关闭并返回false
+     */
+    boolean attach(Closeable stream) {
+        synchronized (this) {
+            if (!cancelled) {
+                streams.add(stream);
+                return true;
+            }
+        }
+        closeQuietly(stream);
+        return false;
+    }
+
+    synchronized void detach(Closeable stream) {
+        streams.remove(stream);
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("关闭模型响应流失败", e);
+        }
+    }
+
+    /**
+     * 线程绑定范围
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.tripdog.ai.routing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流式模型对冲与降级配置
+ * 备用模型通过 OpenAI 兼容协议接入（默认 DashScope 兼容模式）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.routing")
+public class ModelRoutingConfig {
+    /** 是否开启，关闭时直接使用主模型 */
+    private boolean enabled = false;
+    /**
+     * 主模型超过该时间（毫秒）仍无首个输出时，同时向备用模型发起请求，先有输出的一方胜出；0 表示不对冲（默认）。
+     * 对冲有额外成本：备用模型落败时立即断开，但主模型（DashScope SDK 无法中止）落败时仍会完整生成并计费，
+     * 即主模型慢时每次对冲最多付两份生成费用，落败消耗见 chat.model.lose.tokens
+     */
+    private long hedgeAfterMs = 0;
+    /** 主模型在输出前失败时是否改用备用模型 */
+    private boolean fallbackOnError = true;
+    /** 备用模型的 OpenAI 兼容接口地址 */
+    private String fallbackBaseUrl = "https://dashscope.aliyuncs.com/compatible-mode/v1";
+    /** 备用模型的 API Key */
+    private String fallbackApiKey;
+    /** 备用模型名称，应选首字更快的模型 */
+    private String fallbackModelName = "qwen-plus";
+    /** 备用模型请求超时（秒） */
+    private long fallbackTimeoutSeconds = 60;
+}
@@ -0,0 +1,11 @@
+package com.tripdog.ai.routing;
+
+/**
+ * 一轮对话使用的模型档位
+ */
+public enum ModelTier {
+    /** 主模型（DashScope 配置的模型，开启对冲时经过 {@link RoutingStreamingChatModel}） */
+    PRIMARY,
+    /** 角色配置的轻量模型，用于寒暄、短句等简单轮次 */
+    LIGHT
+}
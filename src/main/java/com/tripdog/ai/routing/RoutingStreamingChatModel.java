@@ -0,0 +1,311 @@
+package com.tripdog.ai.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 带对冲与降级的流式模型，对调用方表现为一个普通的 StreamingChatModel
+ * - 对冲：主模型超过 hedgeAfterMs 没有任何输出时，同时向备用模型发起同一请求
+ * - 胜出：两路中先产生输出（文本、思考、工具调用或完整响应）的一方胜出，之后只转发胜者的回调，败者的回调全部丢弃；
+ *   每一路有自己的 {@link ModelCallHandle}（调用方句柄的子句柄），败者立即取消：备用模型（{@link CancellableHttpClient}）
+ *   随之断开连接，DashScope 主模型无法中止，会生成完毕并计费
+ * - 降级：尚未产生输出的一路失败时，若另一路仍在进行则等待它；否则改用备用模型；已有输出后的失败直接上报
+ * 每次调用（含工具调用循环中的每一轮）独立路由。
+ * 指标：chat.model.ttft（tag model）首个输出耗时，chat.model.calls（tag model、outcome=win/lose/error）各模型结果，
+ * chat.model.hedged 对冲次数，chat.model.lose.tokens（tag model）败者落败后消耗的输出token
+ * （完整结束时取用量中的输出token数，被中止时以收到的增量次数估算）。
+ */
+@Slf4j
+public class RoutingStreamingChatModel implements StreamingChatModel {
+    private final StreamingChatModel primary;
+    private final String primaryName;
+    private final StreamingChatModel fallback;
+    private final String fallbackName;
+    private final ModelRoutingConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final MeterRegistry meterRegistry;
+    private final Counter hedgedCounter;
+    private final Map<String, Counter> loseTokenCounters = new ConcurrentHashMap<>();
+
+    public RoutingStreamingChatModel(StreamingChatModel primary, String primaryName,
+                                     StreamingChatModel fallback, String fallbackName,
+                                     ModelRoutingConfig config, ScheduledExecutorService scheduler,
+                                     MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.primaryName = primaryName;
+        this.fallback = fallback;
+        this.fallbackName = fallbackName;
+        this.config = config;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+        this.hedgedCounter = Counter.builder("chat.model.hedged")
+            .description("主模型首个输出超时、向备用模型对冲的次数")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new RoutedCall(chatRequest, handler).start();
+    }
+
+    /**
+     * 一次调用的路由状态，两路回调可能来自不同线程，状态变更均在本对象上同步
+     */
+    private class RoutedCall {
+        private final ChatRequest request;
+        private final StreamingChatResponseHandler downstream;
+        /** 调用方的取消句柄，用户取消时两路一起中止；没有时为null */
+        private final ModelCallHandle parentHandle = ModelCallHandle.current();
+        private final List<Attempt> attempts = new ArrayList<>(2);
+        private Attempt winner;
+        private boolean fallbackStarted;
+        private boolean finished;
+        private ScheduledFuture<?> hedgeTimer;
+
+        RoutedCall(ChatRequest request, StreamingChatResponseHandler downstream) {
+            this.request = request;
+            this.downstream = downstream;
+        }
+
+        void start() {
+            Attempt attempt;
+            synchronized (this) {
+                attempt = new Attempt(this, primaryName);
+                attempts.add(attempt);
+                if (config.getHedgeAfterMs() > 0) {
+                    hedgeTimer = scheduler.schedule(this::hedge, config.getHedgeAfterMs(), TimeUnit.MILLISECONDS);
+                }
+            }
+            run(primary, attempt);
+        }
+
+        private void hedge() {
+            Attempt attempt;
+            synchronized (this) {
+                if (winner != null || finished || fallbackStarted) {
+                    return;
+                }
+                attempt = startFallbackLocked();
+            }
+            hedgedCounter.increment();
+            log.info("主模型{}ms内无输出，对冲到备用模型: {}", config.getHedgeAfterMs(), fallbackName);
+            run(fallback, attempt);
+        }
+
+        private Attempt startFallbackLocked() {
+            fallbackStarted = true;
+            Attempt attempt = new Attempt(this, fallbackName);
+            attempts.add(attempt);
+            return attempt;
+        }
+
+        private void run(StreamingChatModel model, Attempt attempt) {
+            try (ModelCallHandle.Scope ignored = attempt.handle.bind()) {
+                model.chat(request, attempt);
+            } catch (Exception e) {
+                attempt.onError(e);
+            }
+        }
+
+        /**
+         * 产生输出的一路尝试成为胜者；已有其他胜者或调用已结束时返回false
+         */
+        synchronized boolean claim(Attempt attempt) {
+            if (finished || (winner != null && winner != attempt)) {
+                return false;
+            }
+            if (winner == null) {
+                winner = attempt;
+                if (hedgeTimer != null) {
+                    hedgeTimer.cancel(false);
+                }
+                attempt.firstOutput();
+                for (Attempt other : attempts) {
+                    if (other != attempt) {
+                        other.lose();
+                    }
+                }
+            }
+            return true;
+        }
+
+        synchronized boolean complete(Attempt attempt) {
+            if (!claim(attempt)) {
+                return false;
+            }
+            finished = true;
+            return true;
+        }
+
+        void failed(Attempt attempt, Throwable error) {
+            Attempt next = null;
+            synchronized (this) {
+                if (finished || attempt.lost) {
+                    return;
+                }
+                attempt.failed = true;
+                attempt.record("error");
+                if (winner == null) {
+                    boolean othersRunning = attempts.stream().anyMatch(a -> a != attempt && !a.failed);
+                    if (othersRunning) {
+                        log.warn("模型调用失败，等待另一路结果: model={}", attempt.model, error);
+                        return;
+                    }
+                    // 调用方已取消（客户端断开）时不再降级
+                    boolean callerCancelled = parentHandle != null && parentHandle.isCancelled();
+                    if (!fallbackStarted && config.isFallbackOnError() && !callerCancelled) {
+                        log.warn("主模型调用失败，降级到备用模型: {}", fallbackName, error);
+                        next = startFallbackLocked();
+                    }
+                }
+                if (next == null) {
+                    finished = true;
+                    if (hedgeTimer != null) {
+                        hedgeTimer.cancel(false);
+                    }
+                }
+            }
+            if (next != null) {
+                run(fallback, next);
+            } else {
+                downstream.onError(error);
+            }
+        }
+    }
+
+    /**
+     * 向某个模型发起的一路请求
+     */
+    private class Attempt implements StreamingChatResponseHandler {
+        private final RoutedCall call;
+        private final String model;
+        private final ModelCallHandle handle;
+        private final long startNanos = System.nanoTime();
+        private volatile boolean lost;
+        private boolean failed;
+        /** 落败后仍收到的增量次数 */
+        private final AtomicInteger chunksAfterLosing = new AtomicInteger();
+
+        Attempt(RoutedCall call, String model) {
+            this.call = call;
+            this.model = model;
+            this.handle = call.parentHandle == null ? new ModelCallHandle() : call.parentHandle.child();
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            if (accept()) {
+                call.downstream.onPartialResponse(partialResponse);
+            }
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            if (accept()) {
+                call.downstream.onPartialThinking(partialThinking);
+            }
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            if (accept()) {
+                call.downstream.onPartialToolCall(partialToolCall);
+            }
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            if (accept()) {
+                call.downstream.onCompleteToolCall(completeToolCall);
+            }
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            if (call.complete(this)) {
+                call.downstream.onCompleteResponse(completeResponse);
+            } else if (lost) {
+                TokenUsage usage = completeResponse.tokenUsage();
+                recordLoseTokens(usage != null && usage.outputTokenCount() != null
+                    ? usage.outputTokenCount() : chunksAfterLosing.get());
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (lost) {
+                recordLoseTokens(chunksAfterLosing.get());
+                return;
+            }
+            call.failed(this, error);
+        }
+
+        private boolean accept() {
+            if (call.claim(this)) {
+                return true;
+            }
+            if (lost) {
+                chunksAfterLosing.incrementAndGet();
+            }
+            return false;
+        }
+
+        void firstOutput() {
+            Timer.builder("chat.model.ttft")
+                .description("模型首个输出耗时")
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            record("win");
+        }
+
+        /**
+         * 另一路胜出：中止这一路（无法中止的模型只丢弃其输出）
+         */
+        void lose() {
+            if (!failed) {
+                lost = true;
+                record("lose");
+                handle.cancel();
+            }
+        }
+
+        private void recordLoseTokens(int tokens) {
+            if (tokens > 0) {
+                loseTokenCounters.computeIfAbsent(model, m -> Counter.builder("chat.model.lose.tokens")
+                        .description("对冲败者落败后消耗的输出token")
+                        .tag("model", m)
+                        .register(meterRegistry))
+                    .increment(tokens);
+            }
+        }
+
+        void record(String outcome) {
+            Counter.builder("chat.model.calls")
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.tripdog.ai.routing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.tripdog.ai.embedding.DocCountCache;
+import com.tripdog.ai.rewrite.MultiTurnRewriteService;
+import com.tripdog.ai.role.RoleConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按问题复杂度为一轮对话选择模型档位（chat.complexity-routing.enabled 开启）
+ * 按开销从低到高依次检查，命中任一条件即使用主模型：
+ * 1. 角色未配置 ai_setting.light_model_name
+ * 2. 带图片
+ * 3. 文本超过 maxSimpleChars
+ * 4. 依赖上一轮回答的指令（继续、换一个、第N个等，见 {@link MultiTurnRewriteService#referencesPrevious(String)}）
+ * 5. 用户在该角色下有私有文档，回答需要结合检索结果
+ * 其余的寒暄、短句使用轻量模型。决策按 tier、reason 记录在 chat.routing.decisions。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TurnComplexityClassifier {
+    private final ComplexityRoutingConfig config;
+    private final MultiTurnRewriteService rewriteService;
+    private final DocCountCache docCountCache;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> decisionCounters = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public long getClassifyTimeoutMs() {
+        return config.getClassifyTimeoutMs();
+    }
+
+    public ModelTier classify(RoleConfig role, Long userId, String text, boolean hasImage) {
+        if (!StringUtils.hasText(role.getLightModelName())) {
+            return decide(ModelTier.PRIMARY, "no_light_model");
+        }
+        if (hasImage) {
+            return decide(ModelTier.PRIMARY, "image");
+        }
+        if (!StringUtils.hasText(text)) {
+            return decide(ModelTier.PRIMARY, "empty");
+        }
+        if (text.trim().length() > config.getMaxSimpleChars()) {
+            return decide(ModelTier.PRIMARY, "long");
+        }
+        if (rewriteService.referencesPrevious(text)) {
+            return decide(ModelTier.PRIMARY, "follow_up");
+        }
+        if (docCountCache.hasDocs(userId, role.getRoleId())) {
+            return decide(ModelTier.PRIMARY, "has_docs");
+        }
+        log.debug("简单轮次使用轻量模型: roleId={}, model={}", role.getRoleId(), role.getLightModelName());
+        return decide(ModelTier.LIGHT, "simple");
+    }
+
+    private ModelTier decide(ModelTier tier, String reason) {
+        decisionCounters.computeIfAbsent(tier + ":" + reason, k -> Counter.builder("chat.routing.decisions")
+            .description("按复杂度选择模型的决策次数")
+            .tag("tier", tier.name().toLowerCase())
+            .tag("reason", reason)
+            .register(meterRegistry)).increment();
+        return tier;
+    }
+}
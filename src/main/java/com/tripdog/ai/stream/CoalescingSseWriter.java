@@ -0,0 +1,290 @@
+package com.tripdog.ai.stream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 合并增量内容的 SSE 写出器，每轮回复一个实例
+ * 模型逐 token 回调的内容先写入缓冲，按时间窗口或字符数批量作为一个 message 事件发送，减少写出/flush 次数；
+ * 事件ID在同一会话内连续递增。发送失败按客户端断开处理，连接取消后的写入全部忽略。
+ * 开启断点续传时，已发送的事件同时记入 {@link SseReplayBuffer}：客户端断开后继续生成并缓冲，
+ * 在 resumeDetachTimeoutMs 内带 Last-Event-ID 重连即可补发缺失部分并接管实时输出，超时未重连才中止生成。
+ */
+@Slf4j
+public class CoalescingSseWriter implements TokenSink {
+    private final SseConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final DistributionSummary eventsSummary;
+    private final DistributionSummary bytesSummary;
+    private final StringBuilder buffer = new StringBuilder();
+    /** 断点续传缓冲，未开启续传时为null */
+    private final SseReplayBuffer replayBuffer;
+    private final Consumer<SseStream> onSendFailure;
+    private final Consumer<CoalescingSseWriter> onFinished;
+    private final List<Runnable> cancelCallbacks = new CopyOnWriteArrayList<>();
+    /** 当前接收输出的连接，客户端断开、等待重连期间为null */
+    private SseStream stream;
+    private ScheduledFuture<?> pendingFlush;
+    private ScheduledFuture<?> detachTimeout;
+    private long nextId;
+    private long events;
+    private long bytes;
+    private boolean closed;
+    private Throwable failure;
+    private volatile boolean cancelled;
+
+    CoalescingSseWriter(SseStream stream, SseConfig config, ScheduledExecutorService scheduler,
+                        DistributionSummary eventsSummary, DistributionSummary bytesSummary, SseReplayBuffer replayBuffer,
+                        long startId, Consumer<SseStream> onSendFailure, Consumer<CoalescingSseWriter> onFinished) {
+        this.config = config;
+        this.scheduler = scheduler;
+        this.eventsSummary = eventsSummary;
+        this.bytesSummary = bytesSummary;
+        this.replayBuffer = replayBuffer;
+        this.nextId = startId;
+        this.onSendFailure = onSendFailure;
+        this.onFinished = onFinished;
+        synchronized (this) {
+            attach(stream);
+        }
+    }
+
+    /**
+     * 写入一段增量内容
+     */
+    @Override
+    public synchronized void write(String data) {
+        if (closed || data == null || data.isEmpty()) {
+            return;
+        }
+        buffer.append(data);
+        if (config.getFlushIntervalMs() <= 0 || buffer.length() >= config.getMaxBufferChars()) {
+            flush();
+        } else if (pendingFlush == null) {
+            pendingFlush = scheduler.schedule(this::flush, config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即发送缓冲中的内容
+     */
+    public synchronized void flush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (closed || buffer.isEmpty()) {
+            return;
+        }
+        String data = buffer.toString();
+        buffer.setLength(0);
+        send("message", data);
+    }
+
+    /**
+     * 发送剩余内容和结束事件，并正常关闭连接
+     */
+    @Override
+    public synchronized void complete() {
+        flush();
+        if (closed) {
+            return;
+        }
+        send("done", "[DONE]");
+        if (closed) {
+            return;
+        }
+        SseStream current = stream;
+        stream = null;
+        close();
+        if (current != null) {
+            current.complete();
+        }
+    }
+
+    /**
+     * 发送剩余内容后以异常关闭连接
+     */
+    @Override
+    public synchronized void completeWithError(Throwable ex) {
+        flush();
+        if (closed) {
+            return;
+        }
+        failure = ex;
+        SseStream current = stream;
+        stream = null;
+        close();
+        if (current != null) {
+            current.completeWithError(ex);
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void onCancel(Runnable callback) {
+        cancelCallbacks.add(callback);
+        if (cancelled && cancelCallbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+
+    /**
+     * 客户端带 Last-Event-ID 重连：补发之后的事件，本轮仍在生成时接管实时输出
+     * 未开启续传、本轮已中止或缺失的事件已被覆盖时返回false
+     */
+    synchronized boolean resume(SseStream newStream, long lastEventId) {
+        if (replayBuffer == null || cancelled) {
+            return false;
+        }
+        List<SseReplayBuffer.Event> missed = replayBuffer.since(lastEventId);
+        if (missed == null) {
+            return false;
+        }
+        if (detachTimeout != null) {
+            detachTimeout.cancel(false);
+            detachTimeout = null;
+        }
+        SseStream previous = stream;
+        if (previous != null) {
+            // 旧连接尚未发现断开，由新连接接替
+            stream = null;
+            previous.complete();
+        }
+        log.info("SSE断点续传: lastEventId={}, missed={}, finished={}", lastEventId, missed.size(), closed);
+
+        if (closed) {
+            for (SseReplayBuffer.Event event : missed) {
+                if (!sendTo(newStream, event.id, event.name, event.data)) {
+                    return true;
+                }
+            }
+            if (failure != null) {
+                newStream.completeWithError(failure);
+            } else {
+                newStream.complete();
+            }
+            return true;
+        }
+        attach(newStream);
+        for (SseReplayBuffer.Event event : missed) {
+            if (stream != newStream || !sendTo(newStream, event.id, event.name, event.data)) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void attach(SseStream newStream) {
+        stream = newStream;
+        newStream.onCancel(() -> streamCancelled(newStream, SseStream.DISCONNECT.equals(newStream.getCancelReason())));
+    }
+
+    /**
+     * 连接被取消：客户端断开且开启续传时保持生成、等待重连，其余情况（空闲、超时等）中止本轮
+     */
+    private synchronized void streamCancelled(SseStream cancelledStream, boolean disconnected) {
+        if (cancelledStream != stream) {
+            return;
+        }
+        stream = null;
+        if (closed) {
+            return;
+        }
+        if (replayBuffer != null && disconnected) {
+            log.info("SSE客户端断开，继续生成并等待重连: detachTimeoutMs={}", config.getResumeDetachTimeoutMs());
+            detachTimeout = scheduler.schedule(this::detachExpired, config.getResumeDetachTimeoutMs(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        cancel();
+    }
+
+    private synchronized void detachExpired() {
+        detachTimeout = null;
+        if (stream == null && !closed) {
+            log.info("SSE客户端未在限定时间内重连，中止生成");
+            cancel();
+        }
+    }
+
+    private void cancel() {
+        cancelled = true;
+        close();
+        for (Runnable callback : cancelCallbacks) {
+            if (cancelCallbacks.remove(callback)) {
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    log.error("执行SSE取消回调失败", e);
+                }
+            }
+        }
+    }
+
+    private void send(String name, String data) {
+        long id = nextId++;
+        events++;
+        bytes += data.getBytes(StandardCharsets.UTF_8).length;
+        if (replayBuffer != null) {
+            replayBuffer.add(id, name, data);
+        }
+        if (stream != null) {
+            sendTo(stream, id, name, data);
+        }
+    }
+
+    private boolean sendTo(SseStream target, long id, String name, String data) {
+        try {
+            target.send(SseEmitter.event()
+                .data(data)
+                .id(String.valueOf(id))
+                .name(name));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // 写出失败通常是客户端已断开，由注册表取消连接
+            log.warn("发送SSE事件失败: {}", e.getMessage());
+            onSendFailure.accept(target);
+            if (stream == target) {
+                // 连接已结束、未触发取消回调
+                streamCancelled(target, true);
+            }
+            return false;
+        }
+    }
+
+    private void close() {
+        closed = true;
+        buffer.setLength(0);
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (detachTimeout != null) {
+            detachTimeout.cancel(false);
+            detachTimeout = null;
+        }
+        eventsSummary.record(events);
+        bytesSummary.record(bytes);
+        log.debug("SSE流结束: events={}, bytes={}", events, bytes);
+        onFinished.accept(this);
+    }
+
+    long getNextId() {
+        return nextId;
+    }
+}
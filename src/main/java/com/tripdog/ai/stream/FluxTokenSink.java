@@ -0,0 +1,69 @@
+package com.tripdog.ai.stream;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * 把模型增量回调写入 {@link FluxSink}
+ * 下游取消订阅（客户端断开、空闲超时、超过最长时长）时标记为已取消并执行取消回调。
+ */
+@Slf4j
+public class FluxTokenSink implements TokenSink {
+    private final FluxSink<String> sink;
+    private final List<Runnable> cancelCallbacks = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    public FluxTokenSink(FluxSink<String> sink) {
+        this.sink = sink;
+        sink.onCancel(this::cancel);
+    }
+
+    @Override
+    public void write(String data) {
+        if (cancelled || data == null || data.isEmpty()) {
+            return;
+        }
+        sink.next(data);
+    }
+
+    @Override
+    public void complete() {
+        sink.complete();
+    }
+
+    @Override
+    public void completeWithError(Throwable ex) {
+        if (!cancelled) {
+            sink.error(ex);
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void onCancel(Runnable callback) {
+        cancelCallbacks.add(callback);
+        if (cancelled && cancelCallbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+
+    private void cancel() {
+        cancelled = true;
+        for (Runnable callback : cancelCallbacks) {
+            if (cancelCallbacks.remove(callback)) {
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    log.error("执行响应式流取消回调失败", e);
+                }
+            }
+        }
+    }
+}
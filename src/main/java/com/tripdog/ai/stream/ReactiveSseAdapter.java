@@ -0,0 +1,102 @@
+package com.tripdog.ai.stream;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 把模型增量内容的 Flux 转成 SSE 事件流（chat.sse.mode=reactive）
+ * - 增量先进入有界缓冲（reactiveBufferSize），下游按需请求，客户端读取过慢时中止本轮而不是无限堆积
+ * - 按 flushIntervalMs 窗口合并，单个事件最多合并 maxBufferChars 个增量；事件ID为流内从1开始的递增序号，结束时发送 done 事件
+ * - 超过 idleTimeoutMs 没有增量、超过 maxDurationMs 时取消上游（中止模型生成）并结束连接
+ * - 定时发送心跳注释
+ * 事件数、字节数、打开连接数与取消原因沿用 SseEmitter 模式的指标。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveSseAdapter {
+    private final SseConfig config;
+    private final MeterRegistry meterRegistry;
+    private final SseStreamRegistry sseStreamRegistry;
+    private DistributionSummary eventsSummary;
+    private DistributionSummary bytesSummary;
+
+    @PostConstruct
+    void init() {
+        eventsSummary = DistributionSummary.builder("chat.sse.stream.events")
+            .description("单个SSE流发送的事件数")
+            .register(meterRegistry);
+        bytesSummary = DistributionSummary.builder("chat.sse.stream.bytes")
+            .description("单个SSE流发送的数据字节数")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    public Flux<ServerSentEvent<String>> adapt(Flux<String> tokens) {
+        return Flux.defer(() -> {
+            AtomicLong nextId = new AtomicLong(1);
+            AtomicLong bytes = new AtomicLong();
+
+            Flux<String> chunks = tokens
+                .onBackpressureBuffer(config.getReactiveBufferSize(), BufferOverflowStrategy.ERROR)
+                .timeout(Duration.ofMillis(config.getIdleTimeoutMs()));
+            if (config.getFlushIntervalMs() > 0) {
+                chunks = chunks
+                    .bufferTimeout(config.getMaxBufferChars(), Duration.ofMillis(config.getFlushIntervalMs()), true)
+                    .map(parts -> String.join("", parts));
+            }
+
+            Flux<ServerSentEvent<String>> events = chunks
+                .map(data -> {
+                    bytes.addAndGet(data.getBytes(StandardCharsets.UTF_8).length);
+                    return event(nextId, "message", data);
+                })
+                .concatWith(Mono.fromSupplier(() -> event(nextId, "done", "[DONE]")))
+                .onErrorResume(TimeoutException.class, e -> {
+                    // 空闲超时：上游已被取消，正常结束连接
+                    sseStreamRegistry.cancelled("idle");
+                    return Flux.empty();
+                })
+                .takeUntilOther(Mono.delay(Duration.ofMillis(config.getMaxDurationMs()))
+                    .doOnNext(t -> sseStreamRegistry.cancelled("timeout")));
+
+            Flux<ServerSentEvent<String>> heartbeats = Flux.interval(Duration.ofMillis(config.getHeartbeatIntervalMs()))
+                .map(i -> ServerSentEvent.<String>builder().comment("ping").build());
+
+            return events
+                .publish(shared -> Flux.merge(shared,
+                    heartbeats.takeUntilOther(shared.then(Mono.just(true)).onErrorReturn(true))))
+                .doOnSubscribe(s -> sseStreamRegistry.reactiveOpened())
+                .doOnCancel(() -> sseStreamRegistry.cancelled(SseStream.DISCONNECT))
+                .doFinally(signal -> {
+                    sseStreamRegistry.reactiveClosed();
+                    long sent = nextId.get() - 1;
+                    eventsSummary.record(sent);
+                    bytesSummary.record(bytes.get());
+                    log.debug("SSE流结束: events={}, bytes={}, signal={}", sent, bytes.get(), signal);
+                });
+        });
+    }
+
+    private ServerSentEvent<String> event(AtomicLong nextId, String name, String data) {
+        return ServerSentEvent.<String>builder()
+            .id(String.valueOf(nextId.getAndIncrement()))
+            .event(name)
+            .data(data)
+            .build();
+    }
+}
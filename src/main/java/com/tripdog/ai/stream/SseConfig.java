@@ -0,0 +1,38 @@
+package com.tripdog.ai.stream;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * SSE 推送配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.sse")
+public class SseConfig {
+    /** 聊天接口的推送方式：emitter 为 SseEmitter；reactive 返回 Flux，流在模型回调线程上推进，不占用请求线程 */
+    private String mode = "emitter";
+    /** 合并窗口（毫秒）：窗口内的增量内容合并为一个事件发送，0 表示每个增量立即发送 */
+    private long flushIntervalMs = 50;
+    /** 缓冲字符数达到该值时立即发送，不等窗口结束 */
+    private int maxBufferChars = 64;
+    /** 定时发送的线程数 */
+    private int flushThreads = 2;
+    /** 超过该时长（毫秒）没有写出时发送心跳注释 */
+    private long heartbeatIntervalMs = 15000;
+    /** 超过该时长（毫秒）没有数据事件时取消连接并中止生成 */
+    private long idleTimeoutMs = 120000;
+    /** 单个连接最长存活时长（毫秒） */
+    private long maxDurationMs = 600000;
+    /** 是否开启断点续传：客户端断开后继续生成并缓冲，带 Last-Event-ID 重连时补发（仅 emitter 模式） */
+    private boolean resumeEnabled = true;
+    /** 每个会话缓冲的最近事件数，更早的事件被覆盖后无法续传 */
+    private int resumeBufferEvents = 1024;
+    /** 客户端断开后等待重连的时长（毫秒），超时未重连则中止生成 */
+    private long resumeDetachTimeoutMs = 30000;
+    /** 回复结束后缓冲保留的时长（毫秒） */
+    private long resumeGraceMs = 60000;
+    /** reactive 模式下客户端读取跟不上模型输出时最多缓冲的增量条数，超出后中止本轮 */
+    private int reactiveBufferSize = 4096;
+}
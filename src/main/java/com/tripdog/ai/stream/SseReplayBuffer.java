@@ -0,0 +1,57 @@
+package com.tripdog.ai.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * 一轮回复已发送事件的环形缓冲，按事件ID定位
+ * 事件ID连续递增，超出容量时覆盖最早的事件；非线程安全，由 {@link CoalescingSseWriter} 加锁访问
+ */
+class SseReplayBuffer {
+    private final Event[] ring;
+    /** 缓冲中最早一条事件的ID */
+    private long firstId;
+    /** 下一条事件的ID */
+    private long nextId;
+
+    SseReplayBuffer(int capacity, long startId) {
+        this.ring = new Event[capacity];
+        this.firstId = startId;
+        this.nextId = startId;
+    }
+
+    void add(long id, String name, String data) {
+        ring[(int) (id % ring.length)] = new Event(id, name, data);
+        nextId = id + 1;
+        if (nextId - firstId > ring.length) {
+            firstId = nextId - ring.length;
+        }
+    }
+
+    /**
+     * lastEventId 之后的事件；中间有事件已被覆盖、或ID不属于本轮时返回null
+     */
+    List<Event> since(long lastEventId) {
+        if (lastEventId + 1 < firstId || lastEventId >= nextId) {
+            return null;
+        }
+        List<Event> events = new ArrayList<>((int) (nextId - lastEventId - 1));
+        for (long id = lastEventId + 1; id < nextId; id++) {
+            events.add(ring[(int) (id % ring.length)]);
+        }
+        return events;
+    }
+
+    long getNextId() {
+        return nextId;
+    }
+
+    @AllArgsConstructor
+    static class Event {
+        final long id;
+        final String name;
+        final String data;
+    }
+}
@@ -0,0 +1,128 @@
+package com.tripdog.ai.stream;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 一个打开中的 SSE 连接
+ * 正常结束走 {@link #complete()} / {@link #completeWithError(Throwable)}；客户端断开、空闲或超时时被取消，
+ * 取消回调用于中止仍在进行的模型调用（会话轮次在模型的结束回调到达后才释放）。结束与取消互斥，只生效一次。
+ */
+@Slf4j
+public class SseStream {
+    /** 客户端断开（含写出失败）的取消原因 */
+    public static final String DISCONNECT = "disconnect";
+
+    private final SseEmitter emitter;
+    private final long openedAt = System.currentTimeMillis();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final List<Runnable> cancelCallbacks = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+    private volatile String cancelReason;
+    private volatile long lastDataAt = openedAt;
+    private volatile long lastWriteAt = openedAt;
+
+    SseStream(SseEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public String getCancelReason() {
+        return cancelReason;
+    }
+
+    /**
+     * 注册取消回调；已取消时立即执行
+     */
+    public void onCancel(Runnable callback) {
+        cancelCallbacks.add(callback);
+        if (cancelled && cancelCallbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+
+    /**
+     * 发送一个数据事件，记录活跃时间
+     */
+    public void send(SseEmitter.SseEventBuilder event) throws IOException {
+        emitter.send(event);
+        lastDataAt = lastWriteAt = System.currentTimeMillis();
+    }
+
+    public void complete() {
+        if (closed.compareAndSet(false, true)) {
+            emitter.complete();
+        }
+    }
+
+    public void completeWithError(Throwable ex) {
+        if (closed.compareAndSet(false, true)) {
+            emitter.completeWithError(ex);
+        }
+    }
+
+    /**
+     * 发送心跳注释，失败说明客户端已断开
+     */
+    boolean heartbeat() {
+        try {
+            emitter.send(SseEmitter.event().comment("ping"));
+            lastWriteAt = System.currentTimeMillis();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 取消连接：执行取消回调并关闭连接；已正常结束时返回false
+     */
+    boolean cancel(String reason) {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        cancelReason = reason;
+        cancelled = true;
+        log.info("SSE连接取消: reason={}, aliveMs={}", reason, System.currentTimeMillis() - openedAt);
+        for (Runnable callback : cancelCallbacks) {
+            if (cancelCallbacks.remove(callback)) {
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    log.error("执行SSE取消回调失败", e);
+                }
+            }
+        }
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("关闭已断开的SSE连接失败", e);
+        }
+        return true;
+    }
+
+    long getOpenedAt() {
+        return openedAt;
+    }
+
+    long getLastDataAt() {
+        return lastDataAt;
+    }
+
+    long getLastWriteAt() {
+        return lastWriteAt;
+    }
+}
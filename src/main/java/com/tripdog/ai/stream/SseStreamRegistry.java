@@ -0,0 +1,128 @@
+package com.tripdog.ai.stream;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 本节点打开中的 SSE 连接注册表
+ * - 连接最长存活 maxDurationMs，超时取消
+ * - 超过 heartbeatIntervalMs 没有写出时发送心跳注释，写出失败视为客户端断开
+ * - 超过 idleTimeoutMs 没有数据事件（模型无输出）时取消
+ * - 容器回调的连接错误/断开同样取消
+ * 取消会执行连接上注册的回调（中止模型生成、释放会话轮次）。
+ * 打开连接数以 chat.sse.open 注册为 gauge，取消次数按原因记录在 chat.sse.cancelled。
+ * reactive 模式的连接由 {@link ReactiveSseAdapter} 自行管理心跳与超时，只在这里计数。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SseStreamRegistry {
+    private static final long SWEEP_INTERVAL_MS = 1000;
+
+    private final SseConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Set<SseStream> streams = ConcurrentHashMap.newKeySet();
+    private final Map<String, Counter> cancelCounters = new ConcurrentHashMap<>();
+    private final AtomicInteger reactiveStreams = new AtomicInteger();
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("chat.sse.open", this, r -> r.streams.size() + r.reactiveStreams.get())
+            .description("本节点打开中的SSE连接数")
+            .register(meterRegistry);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+        for (SseStream stream : streams) {
+            cancel(stream, "shutdown");
+        }
+    }
+
+    /**
+     * 打开一个新连接
+     */
+    public SseStream open() {
+        SseEmitter emitter = new SseEmitter(config.getMaxDurationMs());
+        SseStream stream = new SseStream(emitter);
+        streams.add(stream);
+        emitter.onCompletion(() -> {
+            streams.remove(stream);
+            // 未经 complete 结束的连接（如客户端断开）同样取消
+            cancel(stream, SseStream.DISCONNECT);
+        });
+        emitter.onError(ex -> cancel(stream, SseStream.DISCONNECT));
+        emitter.onTimeout(() -> cancel(stream, "timeout"));
+        return stream;
+    }
+
+    /**
+     * 写出失败时调用，按客户端断开处理
+     */
+    public void disconnected(SseStream stream) {
+        cancel(stream, SseStream.DISCONNECT);
+    }
+
+    void reactiveOpened() {
+        reactiveStreams.incrementAndGet();
+    }
+
+    void reactiveClosed() {
+        reactiveStreams.decrementAndGet();
+    }
+
+    /**
+     * 记录一次取消
+     */
+    void cancelled(String reason) {
+        cancelCounters.computeIfAbsent(reason, r -> Counter.builder("chat.sse.cancelled")
+            .tag("reason", r)
+            .register(meterRegistry)).increment();
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (SseStream stream : streams) {
+            try {
+                if (now - stream.getLastDataAt() > config.getIdleTimeoutMs()) {
+                    cancel(stream, "idle");
+                } else if (now - stream.getLastWriteAt() >= config.getHeartbeatIntervalMs() && !stream.heartbeat()) {
+                    cancel(stream, SseStream.DISCONNECT);
+                }
+            } catch (Exception e) {
+                log.error("检查SSE连接失败", e);
+            }
+        }
+    }
+
+    private void cancel(SseStream stream, String reason) {
+        if (stream.cancel(reason)) {
+            cancelled(reason);
+        }
+        streams.remove(stream);
+    }
+}
@@ -0,0 +1,84 @@
+package com.tripdog.ai.stream;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 创建合并写出器，共享定时发送线程与统计指标
+ * 每个流结束时记录 chat.sse.stream.events（事件数）与 chat.sse.stream.bytes（数据字节数）
+ * 开启断点续传时按会话保留最近一轮的写出器，回复结束 resumeGraceMs 后释放；
+ * 同一会话的事件ID接着上一轮递增，旧一轮的 Last-Event-ID 不会误续到新一轮。
+ * 缓冲只在本节点，多节点部署时续传依赖会话粘滞。
+ */
+@Component
+@RequiredArgsConstructor
+public class SseWriterFactory {
+    private final SseConfig config;
+    private final MeterRegistry meterRegistry;
+    private final SseStreamRegistry sseStreamRegistry;
+    /** 会话ID -> 最近一轮的写出器（含续传缓冲） */
+    private final Map<String, CoalescingSseWriter> resumableWriters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private DistributionSummary eventsSummary;
+    private DistributionSummary bytesSummary;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger seq = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(config.getFlushThreads(), r -> {
+            Thread t = new Thread(r, "sse-flusher-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        eventsSummary = DistributionSummary.builder("chat.sse.stream.events")
+            .description("单个SSE流发送的事件数")
+            .register(meterRegistry);
+        bytesSummary = DistributionSummary.builder("chat.sse.stream.bytes")
+            .description("单个SSE流发送的数据字节数")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 为会话的一轮回复创建写出器
+     */
+    public CoalescingSseWriter create(String conversationId, SseStream stream) {
+        if (!config.isResumeEnabled()) {
+            return new CoalescingSseWriter(stream, config, scheduler, eventsSummary, bytesSummary, null, 1,
+                sseStreamRegistry::disconnected, writer -> { });
+        }
+        CoalescingSseWriter previous = resumableWriters.get(conversationId);
+        long startId = previous != null ? previous.getNextId() : 1;
+        CoalescingSseWriter writer = new CoalescingSseWriter(stream, config, scheduler, eventsSummary, bytesSummary,
+            new SseReplayBuffer(config.getResumeBufferEvents(), startId), startId,
+            sseStreamRegistry::disconnected, finished -> scheduler.schedule(
+                () -> resumableWriters.remove(conversationId, finished), config.getResumeGraceMs(), TimeUnit.MILLISECONDS));
+        resumableWriters.put(conversationId, writer);
+        return writer;
+    }
+
+    /**
+     * 客户端带 Last-Event-ID 重连，接到会话最近一轮的回复上；无法续传时返回false
+     */
+    public boolean resume(String conversationId, SseStream stream, long lastEventId) {
+        CoalescingSseWriter writer = resumableWriters.get(conversationId);
+        return writer != null && writer.resume(stream, lastEventId);
+    }
+}
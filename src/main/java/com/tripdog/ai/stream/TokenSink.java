@@ -0,0 +1,31 @@
+package com.tripdog.ai.stream;
+
+/**
+ * 一轮对话流式回复的输出端
+ * SseEmitter 模式由 {@link CoalescingSseWriter} 实现，响应式模式由 {@link FluxTokenSink} 实现；
+ * 被取消（客户端断开、空闲或超时）后写入全部忽略，并执行注册的取消回调。
+ */
+public interface TokenSink {
+
+    /**
+     * 写入一段增量内容
+     */
+    void write(String data);
+
+    /**
+     * 正常结束
+     */
+    void complete();
+
+    /**
+     * 以异常结束
+     */
+    void completeWithError(Throwable ex);
+
+    boolean isCancelled();
+
+    /**
+     * 注册取消回调；已取消时立即执行
+     */
+    void onCancel(Runnable callback);
+}
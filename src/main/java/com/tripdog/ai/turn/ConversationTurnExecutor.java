@@ -0,0 +1,232 @@
+package com.tripdog.ai.turn;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.tripdog.common.ErrorCode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 会话轮次串行执行器（每个会话一个邮箱）
+ * 一轮对话从读取会话记忆开始，到模型流式回复结束、AI消息写入为止；同一会话同一时刻只允许一轮在进行，
+ * 后到的轮次按 {@link TurnConfig} 的策略排队或拒绝，前一轮释放后由调度线程启动下一轮；
+ * 排队超过 waitTimeoutMs 仍未开始的轮次由定时任务移出队列并拒绝，不必等到前一轮结束。
+ * 空闲会话不占用邮箱，不同会话之间没有共享锁，可完全并行。
+ * 排队数、活跃会话数、拒绝次数以 chat.turn 前缀注册到 Micrometer。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationTurnExecutor {
+    private final TurnConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedTurns = new AtomicInteger();
+    private ExecutorService dispatcher;
+    private ScheduledExecutorService expiryScheduler;
+    private Counter rejectedCounter;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * 一轮对话
+     */
+    public interface Turn {
+        /**
+         * 开始本轮；本轮结束（完成或失败）时必须调用 release，重复调用无副作用
+         */
+        void start(Runnable release);
+
+        /**
+         * 本轮被拒绝，未执行
+         */
+        void reject(String reason);
+    }
+
+    @PostConstruct
+    void init() {
+        if (virtualThreads) {
+            // 排队轮次启动时会阻塞在数据库、检索上，虚拟线程模式下每轮一个虚拟线程
+            dispatcher = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-turn-", 0).factory());
+        } else {
+            AtomicInteger seq = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(config.getDispatchThreads(), config.getDispatchThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "chat-turn-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            pool.allowCoreThreadTimeOut(true);
+            dispatcher = pool;
+        }
+
+        expiryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-turn-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+
+        Gauge.builder("chat.turn.queued", queuedTurns, AtomicInteger::get)
+            .description("等待前一轮结束的对话轮次数")
+            .register(meterRegistry);
+        Gauge.builder("chat.turn.active", mailboxes, Map::size)
+            .description("有对话轮次正在进行的会话数")
+            .register(meterRegistry);
+        rejectedCounter = Counter.builder("chat.turn.rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        expiryScheduler.shutdownNow();
+    }
+
+    /**
+     * 提交一轮对话：会话空闲时在当前线程立即开始，否则按策略排队或拒绝
+     */
+    public void submit(String conversationId, Turn turn) {
+        PendingTurn pending = new PendingTurn(turn, System.currentTimeMillis(), MDC.getCopyOfContextMap());
+        AtomicBoolean runNow = new AtomicBoolean();
+        AtomicBoolean rejected = new AtomicBoolean();
+        mailboxes.compute(conversationId, (id, box) -> {
+            if (box == null) {
+                runNow.set(true);
+                return new Mailbox();
+            }
+            if (config.getPolicy() == TurnConfig.Policy.REJECT || box.queue.size() >= config.getMaxQueuedTurns()) {
+                rejected.set(true);
+                return box;
+            }
+            box.queue.addLast(pending);
+            queuedTurns.incrementAndGet();
+            return box;
+        });
+
+        if (runNow.get()) {
+            run(conversationId, turn);
+        } else if (rejected.get()) {
+            rejectedCounter.increment();
+            log.warn("会话已有对话在进行，拒绝新的请求: conversationId={}", conversationId);
+            turn.reject(ErrorCode.CONVERSATION_BUSY.getMessage());
+        } else {
+            log.info("会话已有对话在进行，请求排队: conversationId={}", conversationId);
+            pending.expiry = expiryScheduler.schedule(() -> expire(conversationId, pending),
+                config.getWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 排队超时：轮次仍在队列中时移出并拒绝，已被调度启动的不受影响
+     */
+    private void expire(String conversationId, PendingTurn pending) {
+        AtomicBoolean removed = new AtomicBoolean();
+        mailboxes.computeIfPresent(conversationId, (id, box) -> {
+            if (box.queue.remove(pending)) {
+                removed.set(true);
+                queuedTurns.decrementAndGet();
+            }
+            return box;
+        });
+        if (!removed.get()) {
+            return;
+        }
+        if (pending.mdc != null) {
+            MDC.setContextMap(pending.mdc);
+        }
+        try {
+            rejectedCounter.increment();
+            log.warn("排队超时，放弃本轮对话: conversationId={}, waitedMs={}", conversationId,
+                System.currentTimeMillis() - pending.enqueuedAt);
+            pending.turn.reject(ErrorCode.CONVERSATION_BUSY.getMessage());
+        } catch (Exception e) {
+            log.error("拒绝排队超时的对话轮次失败: conversationId={}", conversationId, e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private void run(String conversationId, Turn turn) {
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                release(conversationId);
+            }
+        };
+        try {
+            turn.start(release);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    /**
+     * 结束当前轮次：有排队轮次时交给调度线程启动，否则移除邮箱
+     */
+    private void release(String conversationId) {
+        PendingTurn[] next = new PendingTurn[1];
+        mailboxes.computeIfPresent(conversationId, (id, box) -> {
+            next[0] = box.queue.pollFirst();
+            if (next[0] == null) {
+                return null;
+            }
+            queuedTurns.decrementAndGet();
+            return box;
+        });
+        if (next[0] != null) {
+            ScheduledFuture<?> expiry = next[0].expiry;
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            dispatcher.execute(() -> runQueued(conversationId, next[0]));
+        }
+    }
+
+    private void runQueued(String conversationId, PendingTurn pending) {
+        if (pending.mdc != null) {
+            MDC.setContextMap(pending.mdc);
+        }
+        try {
+            run(conversationId, pending.turn);
+        } catch (Exception e) {
+            log.error("启动排队的对话轮次失败: conversationId={}", conversationId, e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private static class Mailbox {
+        private final Deque<PendingTurn> queue = new ArrayDeque<>();
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingTurn {
+        private final Turn turn;
+        private final long enqueuedAt;
+        private final Map<String, String> mdc;
+        /** 排队超时的定时任务，出队启动时取消 */
+        private volatile ScheduledFuture<?> expiry;
+    }
+}
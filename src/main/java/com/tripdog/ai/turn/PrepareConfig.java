@@ -0,0 +1,20 @@
+package com.tripdog.ai.turn;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 对话前置步骤（建会话、上传图片等）并发执行配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.prepare")
+public class PrepareConfig {
+    /** 执行前置步骤的线程数（开启虚拟线程时不生效，每个步骤一个虚拟线程） */
+    private int threads = 16;
+    /** 查询/创建会话的超时（毫秒） */
+    private long conversationTimeoutMs = 3000;
+    /** 上传图片并生成访问链接的超时（毫秒） */
+    private long uploadTimeoutMs = 15000;
+}
@@ -0,0 +1,54 @@
+package com.tripdog.ai.turn;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 对话前置步骤的执行器，通过 {@link #open()} 创建 {@link StageScope}
+ * 开启虚拟线程时每个步骤一个虚拟线程；否则使用固定大小的线程池，队列满时在调用线程执行
+ */
+@Component
+@RequiredArgsConstructor
+public class StageExecutor {
+    private final PrepareConfig config;
+    private ExecutorService executor;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @PostConstruct
+    void init() {
+        if (virtualThreads) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-prepare-", 0).factory());
+        } else {
+            AtomicInteger seq = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(config.getThreads(), config.getThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(config.getThreads() * 4), r -> {
+                    Thread t = new Thread(r, "chat-prepare-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public StageScope open() {
+        return new StageScope(executor);
+    }
+}
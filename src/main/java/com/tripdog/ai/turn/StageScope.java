@@ -0,0 +1,199 @@
+package com.tripdog.ai.turn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.MDC;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 一组并发执行的前置步骤，用法与 JDK 的 StructuredTaskScope.ShutdownOnFailure 一致：
+ * 在 try-with-resources 中 fork 各步骤，join 时开始执行并等待全部完成；任一步骤失败或超过各自的超时即取消其余步骤并抛出，
+ * close 时取消仍未结束的步骤。步骤继承调用线程的 MDC（traceId），各步骤耗时可通过 {@link #timings()} 输出。
+ * 只有一个步骤时直接在调用线程上执行，不切换线程，此时不限时。
+ * 取消不中断已在执行的步骤（避免打断 JDBC 等阻塞调用），只是不再等待其结果。
+ * 非线程安全，fork/join/close 只应在创建它的线程上调用。
+ */
+@Slf4j
+public class StageScope implements AutoCloseable {
+    private final ExecutorService executor;
+    private final long startNanos = System.nanoTime();
+    private final List<Subtask<?>> subtasks = new ArrayList<>();
+    private final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+
+    StageScope(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 提交一个步骤
+     */
+    public <T> Subtask<T> fork(String name, long timeoutMs, Callable<T> task) {
+        return submit(name, timeoutMs, false, null, task);
+    }
+
+    /**
+     * 提交一个可选步骤：失败或超时时以 fallback 作为结果，不影响其余步骤
+     */
+    public <T> Subtask<T> forkOptional(String name, long timeoutMs, T fallback, Callable<T> task) {
+        return submit(name, timeoutMs, true, fallback, task);
+    }
+
+    private <T> Subtask<T> submit(String name, long timeoutMs, boolean optional, T fallback, Callable<T> task) {
+        Subtask<T> subtask = new Subtask<>(name, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs),
+            optional, fallback);
+        subtask.body = () -> {
+            long start = System.nanoTime();
+            try {
+                subtask.result.complete(task.call());
+            } catch (Throwable e) {
+                if (optional) {
+                    log.warn("可选的对话前置步骤失败，使用默认结果: {}", name, e);
+                    subtask.result.complete(fallback);
+                } else {
+                    subtask.result.completeExceptionally(e);
+                    firstFailure.completeExceptionally(e);
+                }
+            } finally {
+                subtask.elapsedNanos = System.nanoTime() - start;
+            }
+        };
+        subtasks.add(subtask);
+        return subtask;
+    }
+
+    /**
+     * 执行并等待全部步骤完成；任一步骤失败或超时时取消其余步骤并抛出
+     */
+    public void join() {
+        if (subtasks.size() == 1) {
+            joinInline(subtasks.get(0));
+            return;
+        }
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        for (Subtask<?> subtask : subtasks) {
+            subtask.future = executor.submit(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    subtask.body.run();
+                } finally {
+                    MDC.clear();
+                }
+            });
+        }
+        for (Subtask<?> subtask : subtasks) {
+            long remaining = subtask.deadlineNanos - System.nanoTime();
+            try {
+                CompletableFuture.anyOf(subtask.result, firstFailure).get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (subtask.optional) {
+                    log.warn("可选的对话前置步骤超时，使用默认结果: {}", subtask.name);
+                    subtask.timeout();
+                    continue;
+                }
+                cancelAll();
+                throw new RuntimeException("对话前置步骤超时: " + subtask.name);
+            } catch (ExecutionException e) {
+                cancelAll();
+                throw unwrap(e.getCause());
+            } catch (InterruptedException e) {
+                cancelAll();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("对话前置步骤被中断", e);
+            }
+        }
+    }
+
+    private void joinInline(Subtask<?> subtask) {
+        subtask.body.run();
+        if (subtask.result.isCompletedExceptionally()) {
+            try {
+                subtask.result.join();
+            } catch (CompletionException e) {
+                throw unwrap(e.getCause());
+            }
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+    }
+
+    /**
+     * 各步骤及总耗时，如 conversation=12ms, upload=340ms, total=341ms
+     */
+    public String timings() {
+        StringBuilder sb = new StringBuilder();
+        for (Subtask<?> subtask : subtasks) {
+            sb.append(subtask.name).append('=');
+            if (subtask.timedOut) {
+                sb.append("timeout, ");
+                continue;
+            }
+            sb.append(subtask.result.isDone() ? TimeUnit.NANOSECONDS.toMillis(subtask.elapsedNanos) + "ms" : "unfinished");
+            sb.append(", ");
+        }
+        return sb.append("total=").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).append("ms").toString();
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+    }
+
+    private void cancelAll() {
+        for (Subtask<?> subtask : subtasks) {
+            if (!subtask.result.isDone() && subtask.future != null) {
+                subtask.future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 已提交的步骤，join 成功后通过 {@link #get()} 取结果
+     */
+    public static class Subtask<T> {
+        private final String name;
+        private final long deadlineNanos;
+        private final boolean optional;
+        private final T fallback;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private Runnable body;
+        /** 并发执行时的任务，单个步骤在调用线程执行时为null */
+        private Future<?> future;
+        private volatile long elapsedNanos;
+        private boolean timedOut;
+
+        private Subtask(String name, long deadlineNanos, boolean optional, T fallback) {
+            this.name = name;
+            this.deadlineNanos = deadlineNanos;
+            this.optional = optional;
+            this.fallback = fallback;
+        }
+
+        private void timeout() {
+            timedOut = true;
+            future.cancel(false);
+            result.complete(fallback);
+        }
+
+        public T get() {
+            if (!result.isDone() || result.isCompletedExceptionally()) {
+                throw new IllegalStateException("步骤未成功完成: " + name);
+            }
+            return result.join();
+        }
+    }
+}
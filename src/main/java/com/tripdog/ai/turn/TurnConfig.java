@@ -0,0 +1,27 @@
+package com.tripdog.ai.turn;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 会话轮次串行化配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.turn")
+public class TurnConfig {
+    /** 会话已有一轮对话在进行时的策略：WAIT 排队等待，REJECT 直接拒绝 */
+    private Policy policy = Policy.WAIT;
+    /** WAIT 策略下单个会话最多排队的轮次数，超出后拒绝 */
+    private int maxQueuedTurns = 2;
+    /** WAIT 策略下排队超过该时长（毫秒）仍未开始的轮次会被拒绝 */
+    private long waitTimeoutMs = 60000;
+    /** 启动排队轮次的线程数（开启虚拟线程时不生效，每轮一个虚拟线程） */
+    private int dispatchThreads = 8;
+
+    public enum Policy {
+        WAIT,
+        REJECT
+    }
+}
@@ -37,6 +37,11 @@ public enum ErrorCode {
     // 对话相关错误码 (10300-10399)
     CONVERSATION_NOT_FOUND(10300, "对话不存在"),
     CONVERSATION_CREATE_FAILED(10301, "对话创建失败"),
+    CONVERSATION_BUSY(10302, "当前会话正在回复中，请稍后再试"),
+    STREAM_NOT_RESUMABLE(10303, "回复已过期，无法继续接收，请重新提问"),
+    CHAT_RATE_LIMITED(10304, "发送过于频繁，请稍后再试"),
+    CHAT_USER_BUSY(10305, "同时进行的对话过多，请等待当前回复结束"),
+    CHAT_OVERLOADED(10306, "当前对话人数过多，请稍后再试"),
 
     // 聊天记录相关错误码 (10400-10499)
     CHAT_HISTORY_NOT_FOUND(10400, "聊天记录不存在"),
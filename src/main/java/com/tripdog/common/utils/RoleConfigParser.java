@@ -1,12 +1,18 @@
 package com.tripdog.common.utils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tripdog.ai.role.RoleConfig;
+import com.tripdog.model.entity.RoleDO;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * 角色配置解析工具
  * 用于解析角色的AI设置和角色设定JSON配置
+ * 聊天链路使用 {@link #parse(RoleDO, String)} 一次解析出完整的 {@link RoleConfig}，各 extract 方法保留给单字段场景
  *
  * @author: iohw
  * @date: 2025/9/25
@@ -16,6 +22,35 @@ public class RoleConfigParser {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * 一次解析角色的AI设置与角色设定，缺失或解析失败的字段取默认值
+     *
+     * @param role 角色实体
+     * @param version 配置版本
+     * @return 角色配置
+     */
+    public static RoleConfig parse(RoleDO role, String version) {
+        JsonNode aiSetting = readTree(role.getAiSetting());
+        JsonNode roleSetting = readTree(role.getRoleSetting());
+        return RoleConfig.builder()
+            .roleId(role.getId())
+            .code(role.getCode())
+            .name(role.getName())
+            .status(role.getStatus())
+            .version(version)
+            .systemPrompt(systemPromptOf(aiSetting))
+            .temperature(doubleOf(aiSetting, "temperature", 0.7))
+            .maxTokens(maxTokensOf(aiSetting))
+            .topP(doubleOf(aiSetting, "top_p", 0.9))
+            .lightModelName(textOf(aiSetting, "light_model_name", null))
+            .personality(List.of(arrayOf(roleSetting, "personality")))
+            .communicationStyle(textOf(roleSetting, "communication_style", "友好自然"))
+            .specialties(List.of(arrayOf(roleSetting, "specialties")))
+            .emoji(textOf(roleSetting, "emoji", "🤖"))
+            .catchphrases(List.of(arrayOf(roleSetting, "catchphrases")))
+            .build();
+    }
+
     /**
      * 从AI设置JSON中提取系统提示词
      *
@@ -23,22 +58,7 @@ public class RoleConfigParser {
      * @return 系统提示词，如果解析失败则返回默认提示词
      */
     public static String extractSystemPrompt(String aiSettingJson) {
-        if (aiSettingJson == null || aiSettingJson.trim().isEmpty()) {
-            return getDefaultSystemPrompt();
-        }
-
-        try {
-            JsonNode aiSetting = objectMapper.readTree(aiSettingJson);
-            JsonNode systemPromptNode = aiSetting.get("system_prompt");
-
-            if (systemPromptNode != null && !systemPromptNode.isNull()) {
-                return systemPromptNode.asText();
-            }
-        } catch (Exception e) {
-            log.error("解析AI设置JSON失败: {}", aiSettingJson, e);
-        }
-
-        return getDefaultSystemPrompt();
+        return systemPromptOf(readTree(aiSettingJson));
     }
 
     /**
@@ -48,22 +68,7 @@ public class RoleConfigParser {
      * @return temperature值，如果解析失败则返回默认值0.7
      */
     public static double extractTemperature(String aiSettingJson) {
-        if (aiSettingJson == null || aiSettingJson.trim().isEmpty()) {
-            return 0.7;
-        }
-
-        try {
-            JsonNode aiSetting = objectMapper.readTree(aiSettingJson);
-            JsonNode temperatureNode = aiSetting.get("temperature");
-
-            if (temperatureNode != null && temperatureNode.isNumber()) {
-                return temperatureNode.asDouble();
-            }
-        } catch (Exception e) {
-            log.error("解析temperature参数失败: {}", aiSettingJson, e);
-        }
-
-        return 0.7;
+        return doubleOf(readTree(aiSettingJson), "temperature", 0.7);
     }
 
     /**
@@ -73,22 +78,7 @@ public class RoleConfigParser {
      * @return max_tokens值，如果解析失败则返回默认值2048
      */
     public static int extractMaxTokens(String aiSettingJson) {
-        if (aiSettingJson == null || aiSettingJson.trim().isEmpty()) {
-            return 2048;
-        }
-
-        try {
-            JsonNode aiSetting = objectMapper.readTree(aiSettingJson);
-            JsonNode maxTokensNode = aiSetting.get("max_tokens");
-
-            if (maxTokensNode != null && maxTokensNode.isNumber()) {
-                return maxTokensNode.asInt();
-            }
-        } catch (Exception e) {
-            log.error("解析max_tokens参数失败: {}", aiSettingJson, e);
-        }
-
-        return 2048;
+        return maxTokensOf(readTree(aiSettingJson));
     }
 
     /**
@@ -98,26 +88,7 @@ public class RoleConfigParser {
      * @return 性格特征数组，如果解析失败则返回空数组
      */
     public static String[] extractPersonality(String roleSettingJson) {
-        if (roleSettingJson == null || roleSettingJson.trim().isEmpty()) {
-            return new String[0];
-        }
-
-        try {
-            JsonNode roleSetting = objectMapper.readTree(roleSettingJson);
-            JsonNode personalityNode = roleSetting.get("personality");
-
-            if (personalityNode != null && personalityNode.isArray()) {
-                String[] personality = new String[personalityNode.size()];
-                for (int i = 0; i < personalityNode.size(); i++) {
-                    personality[i] = personalityNode.get(i).asText();
-                }
-                return personality;
-            }
-        } catch (Exception e) {
-            log.error("解析personality参数失败: {}", roleSettingJson, e);
-        }
-
-        return new String[0];
+        return arrayOf(readTree(roleSettingJson), "personality");
     }
 
     /**
@@ -127,22 +98,7 @@ public class RoleConfigParser {
      * @return 沟通风格描述
      */
     public static String extractCommunicationStyle(String roleSettingJson) {
-        if (roleSettingJson == null || roleSettingJson.trim().isEmpty()) {
-            return "友好自然";
-        }
-
-        try {
-            JsonNode roleSetting = objectMapper.readTree(roleSettingJson);
-            JsonNode styleNode = roleSetting.get("communication_style");
-
-            if (styleNode != null && !styleNode.isNull()) {
-                return styleNode.asText();
-            }
-        } catch (Exception e) {
-            log.error("解析communication_style参数失败: {}", roleSettingJson, e);
-        }
-
-        return "友好自然";
+        return textOf(readTree(roleSettingJson), "communication_style", "友好自然");
     }
 
     /**
@@ -152,26 +108,7 @@ public class RoleConfigParser {
      * @return 专长领域数组
      */
     public static String[] extractSpecialties(String roleSettingJson) {
-        if (roleSettingJson == null || roleSettingJson.trim().isEmpty()) {
-            return new String[0];
-        }
-
-        try {
-            JsonNode roleSetting = objectMapper.readTree(roleSettingJson);
-            JsonNode specialtiesNode = roleSetting.get("specialties");
-
-            if (specialtiesNode != null && specialtiesNode.isArray()) {
-                String[] specialties = new String[specialtiesNode.size()];
-                for (int i = 0; i < specialtiesNode.size(); i++) {
-                    specialties[i] = specialtiesNode.get(i).asText();
-                }
-                return specialties;
-            }
-        } catch (Exception e) {
-            log.error("解析specialties参数失败: {}", roleSettingJson, e);
-        }
-
-        return new String[0];
+        return arrayOf(readTree(roleSettingJson), "specialties");
     }
 
     /**
@@ -181,22 +118,7 @@ public class RoleConfigParser {
      * @return 表情符号
      */
     public static String extractEmoji(String roleSettingJson) {
-        if (roleSettingJson == null || roleSettingJson.trim().isEmpty()) {
-            return "🤖";
-        }
-
-        try {
-            JsonNode roleSetting = objectMapper.readTree(roleSettingJson);
-            JsonNode emojiNode = roleSetting.get("emoji");
-
-            if (emojiNode != null && !emojiNode.isNull()) {
-                return emojiNode.asText();
-            }
-        } catch (Exception e) {
-            log.error("解析emoji参数失败: {}", roleSettingJson, e);
-        }
-
-        return "🤖";
+        return textOf(readTree(roleSettingJson), "emoji", "🤖");
     }
 
     /**
@@ -206,26 +128,7 @@ public class RoleConfigParser {
      * @return 口头禅数组
      */
     public static String[] extractCatchphrases(String roleSettingJson) {
-        if (roleSettingJson == null || roleSettingJson.trim().isEmpty()) {
-            return new String[0];
-        }
-
-        try {
-            JsonNode roleSetting = objectMapper.readTree(roleSettingJson);
-            JsonNode catchphrasesNode = roleSetting.get("catchphrases");
-
-            if (catchphrasesNode != null && catchphrasesNode.isArray()) {
-                String[] catchphrases = new String[catchphrasesNode.size()];
-                for (int i = 0; i < catchphrasesNode.size(); i++) {
-                    catchphrases[i] = catchphrasesNode.get(i).asText();
-                }
-                return catchphrases;
-            }
-        } catch (Exception e) {
-            log.error("解析catchphrases参数失败: {}", roleSettingJson, e);
-        }
-
-        return new String[0];
+        return arrayOf(readTree(roleSettingJson), "catchphrases");
     }
 
     /**
@@ -235,22 +138,7 @@ public class RoleConfigParser {
      * @return top_p值，如果解析失败则返回默认值0.9
      */
     public static double extractTopP(String aiSettingJson) {
-        if (aiSettingJson == null || aiSettingJson.trim().isEmpty()) {
-            return 0.9;
-        }
-
-        try {
-            JsonNode aiSetting = objectMapper.readTree(aiSettingJson);
-            JsonNode topPNode = aiSetting.get("top_p");
-
-            if (topPNode != null && topPNode.isNumber()) {
-                return topPNode.asDouble();
-            }
-        } catch (Exception e) {
-            log.error("解析top_p参数失败: {}", aiSettingJson, e);
-        }
-
-        return 0.9;
+        return doubleOf(readTree(aiSettingJson), "top_p", 0.9);
     }
 
     /**
@@ -261,4 +149,50 @@ public class RoleConfigParser {
     private static String getDefaultSystemPrompt() {
         return "你是一个友好的AI助手，乐于帮助用户解决问题。请用友好、专业的语调回答用户的问题。";
     }
+
+    /**
+     * 解析JSON，空串或解析失败时返回null
+     */
+    private static JsonNode readTree(String json) {
+        if (json == null || json.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            log.error("解析角色配置JSON失败: {}", json, e);
+            return null;
+        }
+    }
+
+    private static String systemPromptOf(JsonNode aiSetting) {
+        return textOf(aiSetting, "system_prompt", getDefaultSystemPrompt());
+    }
+
+    private static int maxTokensOf(JsonNode aiSetting) {
+        JsonNode node = aiSetting == null ? null : aiSetting.get("max_tokens");
+        return node != null && node.isNumber() ? node.asInt() : 2048;
+    }
+
+    private static String textOf(JsonNode setting, String field, String defaultValue) {
+        JsonNode node = setting == null ? null : setting.get(field);
+        return node != null && !node.isNull() ? node.asText() : defaultValue;
+    }
+
+    private static double doubleOf(JsonNode setting, String field, double defaultValue) {
+        JsonNode node = setting == null ? null : setting.get(field);
+        return node != null && node.isNumber() ? node.asDouble() : defaultValue;
+    }
+
+    private static String[] arrayOf(JsonNode setting, String field) {
+        JsonNode node = setting == null ? null : setting.get(field);
+        if (node == null || !node.isArray()) {
+            return new String[0];
+        }
+        List<String> values = new ArrayList<>(node.size());
+        for (JsonNode item : node) {
+            values.add(item.asText());
+        }
+        return values.toArray(new String[0]);
+    }
 }
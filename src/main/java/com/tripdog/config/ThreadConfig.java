@@ -0,0 +1,31 @@
+package com.tripdog.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 线程模型配置
+ * spring.threads.virtual.enabled=true 时 Tomcat 请求线程与 MVC 异步执行器改用虚拟线程，
+ * 流式回复回调中的阻塞操作（更新会话统计、提交摘要任务等）也交给虚拟线程执行，
+ * 不占用模型SDK的网络回调线程；关闭时保持原有行为，在回调线程内直接执行。
+ */
+@Configuration
+public class ThreadConfig {
+
+    @Bean(name = "chatCallbackExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualChatCallbackExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-callback-", 0).factory());
+    }
+
+    @Bean(name = "chatCallbackExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Executor platformChatCallbackExecutor() {
+        return Runnable::run;
+    }
+}
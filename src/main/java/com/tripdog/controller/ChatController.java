@@ -3,15 +3,12 @@ package com.tripdog.controller;
 import java.util.List;
 
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.tripdog.common.ErrorCode;
 import com.tripdog.common.Result;
-import com.tripdog.model.dto.ChatReqDTO;
 import com.tripdog.model.entity.ConversationDO;
 import com.tripdog.model.entity.ChatHistoryDO;
 import com.tripdog.model.vo.UserInfoVO;
-import com.tripdog.service.ChatService;
 import com.tripdog.service.impl.ConversationServiceImpl;
 import com.tripdog.service.impl.UserSessionService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -23,6 +20,7 @@ import lombok.RequiredArgsConstructor;
 /**
  * 聊天控制器
  * 实现一个用户对同一角色只有一个持久会话的逻辑
+ * 对话接口按 chat.sse.mode 由 {@link ChatStreamController} 或 {@link ReactiveChatStreamController} 提供
  */
 @Tag(name = "智能对话", description = "与AI角色进行对话的相关接口，支持SSE流式响应")
 @RestController
@@ -30,33 +28,9 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class ChatController {
 
-    private final ChatService chatService;
     private final ConversationServiceImpl conversationServiceImpl;
     private final UserSessionService userSessionService;
 
-    /**
-     * 与指定角色聊天
-     * @param roleId 角色ID
-     */
-    @Operation(summary = "与AI角色对话", description = "与指定的AI角色进行实时对话，返回SSE流式响应")
-    @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "成功建立SSE连接，返回流式对话内容"),
-            @ApiResponse(responseCode = "10200", description = "角色不存在"),
-            @ApiResponse(responseCode = "10105", description = "用户未登录")
-    })
-    @PostMapping(value = "/{roleId}", produces = "text/event-stream;charset=UTF-8")
-    public SseEmitter chat(@Parameter(description = "角色ID", required = true) @PathVariable Long roleId,
-                          ChatReqDTO req) {
-        // 从用户会话服务获取当前登录用户信息
-        UserInfoVO userInfoVO = userSessionService.getCurrentUser();
-        if (userInfoVO == null) {
-            throw new RuntimeException(ErrorCode.USER_NOT_LOGIN.getMessage());
-        }
-        Long userId = userInfoVO.getId();
-
-        return chatService.chat(roleId, userId, req);
-    }
-
     /**
      * 重置会话上下文
      * @param roleId 角色ID
@@ -0,0 +1,57 @@
+package com.tripdog.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.bind.annotation.*;
+
+import com.tripdog.common.ErrorCode;
+import com.tripdog.model.dto.ChatReqDTO;
+import com.tripdog.model.vo.UserInfoVO;
+import com.tripdog.service.ChatService;
+import com.tripdog.service.impl.UserSessionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 聊天流式接口（chat.sse.mode=emitter，默认）
+ * 基于 SseEmitter，连接由 SseStreamRegistry 管理
+ */
+@Tag(name = "智能对话", description = "与AI角色进行对话的相关接口，支持SSE流式响应")
+@RestController
+@RequestMapping("/chat")
+@ConditionalOnProperty(prefix = "chat.sse", name = "mode", havingValue = "emitter", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ChatStreamController {
+
+    private final ChatService chatService;
+    private final UserSessionService userSessionService;
+
+    /**
+     * 与指定角色聊天
+     * @param roleId 角色ID
+     */
+    @Operation(summary = "与AI角色对话", description = "与指定的AI角色进行实时对话，返回SSE流式响应")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功建立SSE连接，返回流式对话内容"),
+            @ApiResponse(responseCode = "10200", description = "角色不存在"),
+            @ApiResponse(responseCode = "10105", description = "用户未登录"),
+            @ApiResponse(responseCode = "429", description = "发送过于频繁或当前对话人数过多，按 Retry-After 秒后重试")
+    })
+    @PostMapping(value = "/{roleId}", produces = "text/event-stream;charset=UTF-8")
+    public SseEmitter chat(@Parameter(description = "角色ID", required = true) @PathVariable Long roleId,
+                          ChatReqDTO req,
+                          @Parameter(description = "断线重连时收到的最后一个事件ID") @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // 从用户会话服务获取当前登录用户信息
+        UserInfoVO userInfoVO = userSessionService.getCurrentUser();
+        if (userInfoVO == null) {
+            throw new RuntimeException(ErrorCode.USER_NOT_LOGIN.getMessage());
+        }
+        Long userId = userInfoVO.getId();
+
+        return chatService.chat(roleId, userId, req, lastEventId);
+    }
+}
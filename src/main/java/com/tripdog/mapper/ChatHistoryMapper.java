@@ -18,6 +18,11 @@ public interface ChatHistoryMapper {
      */
     int insert(ChatHistoryDO chatHistory);
 
+    /**
+     * 批量插入聊天记录（多行insert，按列表顺序写入）
+     */
+    int insertBatch(List<ChatHistoryDO> list);
+
     /**
      * 根据ID删除聊天记录
      */
@@ -35,6 +40,25 @@ public interface ChatHistoryMapper {
 
     List<ChatHistoryDO> selectAllById(@Param("conversationId") String conversationId);
 
+    /**
+     * 查询会话最新的系统提示词记录（创建或重置会话时写入，作为上下文检查点）
+     */
+    ChatHistoryDO selectLatestSystemMessage(@Param("conversationId") String conversationId);
+
+    /**
+     * 查询指定消息ID之后最近的N条消息，按时间倒序返回
+     */
+    List<ChatHistoryDO> selectMessagesAfter(@Param("conversationId") String conversationId,
+                                            @Param("afterId") Long afterId,
+                                            @Param("limit") Integer limit);
+
+    /**
+     * 查询指定时间（含）之后最早的N条消息，按时间、ID正序返回
+     */
+    List<ChatHistoryDO> selectMessagesSince(@Param("conversationId") String conversationId,
+                                            @Param("since") LocalDateTime since,
+                                            @Param("limit") Integer limit);
+
     /**
      * 动态条件查询聊天记录
      */
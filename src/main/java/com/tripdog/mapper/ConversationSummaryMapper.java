@@ -0,0 +1,27 @@
+package com.tripdog.mapper;
+
+import com.tripdog.model.entity.ConversationSummaryDO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 会话摘要表 Mapper 接口
+ */
+@Mapper
+public interface ConversationSummaryMapper {
+
+    /**
+     * 插入摘要
+     */
+    int insert(ConversationSummaryDO summary);
+
+    /**
+     * 查询会话最新的摘要
+     */
+    ConversationSummaryDO selectLatestByConversationId(@Param("conversationId") String conversationId);
+
+    /**
+     * 根据会话ID删除所有摘要
+     */
+    int deleteByConversationId(@Param("conversationId") String conversationId);
+}
@@ -34,6 +34,14 @@ public interface DocMapper {
      */
     List<DocDO> selectByUserIdAndRoleId(@Param("userId") Long userId, @Param("roleId") Long roleId);
 
+    /**
+     * 统计用户在某角色下的文档数
+     * @param userId 用户ID
+     * @param roleId 角色ID
+     * @return 文档数
+     */
+    int countByUserIdAndRoleId(@Param("userId") Long userId, @Param("roleId") Long roleId);
+
     /**
      * 根据文件ID删除文档
      * @param fileId 文件ID
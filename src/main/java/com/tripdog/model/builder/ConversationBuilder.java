@@ -5,6 +5,7 @@ import com.tripdog.common.Constants;
 import com.tripdog.common.utils.JsonUtil;
 import com.tripdog.model.entity.ConversationDO;
 import com.tripdog.model.entity.ChatHistoryDO;
+import com.tripdog.model.entity.ConversationSummaryDO;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -163,6 +164,19 @@ public class ConversationBuilder {
         return buildFullAssistantMessage(conversationId, content, enhancedContent, null, toolExecResult);
     }
 
+    /**
+     * 创建自动生成的会话摘要
+     */
+    public static ConversationSummaryDO buildAutoSummary(String conversationId, String summaryContent, String messageRange) {
+        ConversationSummaryDO summary = new ConversationSummaryDO();
+        summary.setConversationId(conversationId);
+        summary.setSummaryContent(summaryContent);
+        summary.setSummaryType("AUTO");
+        summary.setMessageRange(messageRange);
+        summary.setCreatedAt(LocalDateTime.now());
+        return summary;
+    }
+
     public static ChatHistoryDO buildToolExecResultMessage(String conversationId, ToolExecutionResultMessage toolExecResult) {
         ChatHistoryDO chatHistory = new ChatHistoryDO();
         chatHistory.setConversationId(conversationId);
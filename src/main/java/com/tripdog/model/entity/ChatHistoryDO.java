@@ -46,6 +46,16 @@ public class ChatHistoryDO {
      */
     private String toolExecResult;
 
+    /**
+     * 输入token数（用户消息、系统提示词、工具调用结果）
+     */
+    private Integer inputTokens;
+
+    /**
+     * 输出token数（AI生成的回复、工具调用请求）
+     */
+    private Integer outputTokens;
+
     /**
      * 消息创建时间
      */
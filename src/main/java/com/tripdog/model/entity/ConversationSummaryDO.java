@@ -0,0 +1,42 @@
+package com.tripdog.model.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 会话摘要表
+ */
+@Data
+public class ConversationSummaryDO {
+
+    /**
+     * 摘要ID
+     */
+    private Long id;
+
+    /**
+     * 会话ID
+     */
+    private String conversationId;
+
+    /**
+     * 摘要内容
+     */
+    private String summaryContent;
+
+    /**
+     * 摘要类型：AUTO=自动生成，MANUAL=手动创建
+     */
+    private String summaryType;
+
+    /**
+     * 摘要覆盖的消息范围，格式为 t_chat_history 的 "起始ID-结束ID"
+     */
+    private String messageRange;
+
+    /**
+     * 摘要生成时间
+     */
+    private LocalDateTime createdAt;
+}
@@ -1,8 +1,11 @@
 package com.tripdog.service;
 
 import com.tripdog.model.dto.ChatReqDTO;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import reactor.core.publisher.Flux;
+
 /**
  * 聊天服务接口
  */
@@ -13,8 +16,19 @@ public interface ChatService {
      * @param roleId 角色ID
      * @param userId 用户ID
      * @param ChatReqDTO 聊天请求
+     * @param lastEventId 断线重连时客户端收到的最后一个事件ID，非空时不发起新的一轮，续接最近一轮的回复
      * @return SseEmitter 流式响应
      */
-    SseEmitter chat(Long roleId, Long userId, ChatReqDTO ChatReqDTO);
+    SseEmitter chat(Long roleId, Long userId, ChatReqDTO ChatReqDTO, Long lastEventId);
+
+    /**
+     * 与指定角色聊天（响应式）
+     * @param roleId 角色ID
+     * @param userId 用户ID
+     * @param chatReqDTO 聊天请求
+     * @param lastEventId 断线重连时客户端收到的最后一个事件ID，响应式模式不支持续传
+     * @return SSE 事件流，订阅时开始本轮对话，取消订阅时中止生成
+     */
+    Flux<ServerSentEvent<String>> chatFlux(Long roleId, Long userId, ChatReqDTO chatReqDTO, Long lastEventId);
 
 }
@@ -1,33 +1,65 @@
 package com.tripdog.service.impl;
 
-import java.io.IOException;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.tripdog.ai.AssistantService;
+import com.tripdog.ai.CustomerChatMemoryProvider;
+import com.tripdog.ai.admission.ChatAdmission;
+import com.tripdog.ai.admission.ChatRejectedException;
 import com.tripdog.ai.assistant.ChatAssistant;
+import com.tripdog.ai.cache.SemanticCacheProbe;
+import com.tripdog.ai.cache.SemanticResponseCache;
+import com.tripdog.ai.compress.CompressionService;
+import com.tripdog.ai.metrics.ChatMetrics;
+import com.tripdog.ai.role.RoleConfig;
+import com.tripdog.ai.role.RoleConfigCache;
+import com.tripdog.ai.routing.ModelCallCancelledException;
+import com.tripdog.ai.routing.ModelCallHandle;
+import com.tripdog.ai.routing.ModelTier;
+import com.tripdog.ai.routing.TurnComplexityClassifier;
+import com.tripdog.ai.stream.FluxTokenSink;
+import com.tripdog.ai.stream.ReactiveSseAdapter;
+import com.tripdog.ai.stream.SseStream;
+import com.tripdog.ai.stream.SseStreamRegistry;
+import com.tripdog.ai.stream.SseWriterFactory;
+import com.tripdog.ai.stream.TokenSink;
+import com.tripdog.ai.turn.ConversationTurnExecutor;
+import com.tripdog.ai.turn.PrepareConfig;
+import com.tripdog.ai.turn.StageExecutor;
+import com.tripdog.ai.turn.StageScope;
+import com.tripdog.common.ErrorCode;
 import com.tripdog.common.utils.FileUploadUtils;
 import com.tripdog.common.utils.ThreadLocalUtils;
 import com.tripdog.model.dto.FileUploadDTO;
 import com.tripdog.model.entity.ConversationDO;
-import com.tripdog.model.entity.RoleDO;
 import com.tripdog.model.dto.ChatReqDTO;
 import com.tripdog.service.ChatService;
 import com.tripdog.mapper.ChatHistoryMapper;
-import com.tripdog.mapper.RoleMapper;
-import com.tripdog.common.utils.RoleConfigParser;
 
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.ImageContent;
+import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.TextContent;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.TokenStream;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import static com.tripdog.common.Constants.ROLE_ID;
+import static com.tripdog.common.Constants.USER_ID;
 
 /**
  * 聊天服务实现类
@@ -39,85 +71,370 @@ public class ChatServiceImpl implements ChatService {
     private final StreamingChatModel chatLanguageModel;
     private final ConversationServiceImpl conversationServiceImpl;
     private final ChatHistoryMapper chatHistoryMapper;
-    private final RoleMapper roleMapper;
+    private final RoleConfigCache roleConfigCache;
     private final AssistantService assistantService;
     private final FileUploadUtils fileUploadUtils;
+    private final CompressionService compressionService;
+    private final ConversationTurnExecutor conversationTurnExecutor;
+    private final SseWriterFactory sseWriterFactory;
+    private final SseStreamRegistry sseStreamRegistry;
+    private final ReactiveSseAdapter reactiveSseAdapter;
+    private final StageExecutor stageExecutor;
+    private final PrepareConfig prepareConfig;
+    private final SemanticResponseCache semanticResponseCache;
+    private final CustomerChatMemoryProvider chatMemoryProvider;
+    private final ChatAdmission chatAdmission;
+    private final ChatMetrics chatMetrics;
+    private final TurnComplexityClassifier complexityClassifier;
+    @Resource(name = "chatCallbackExecutor")
+    private Executor chatCallbackExecutor;
 
     @Override
-    public SseEmitter chat(Long roleId, Long userId, ChatReqDTO chatReqDTO) {
+    public SseEmitter chat(Long roleId, Long userId, ChatReqDTO chatReqDTO, Long lastEventId) {
+        if (lastEventId != null) {
+            return resume(roleId, userId, lastEventId);
+        }
+        ChatMetrics.TurnTimer timer = chatMetrics.startTurn(roleId);
+        // 用户并发、节点并发与限流检查，被拒绝时抛出异常直接返回429
+        ChatAdmission.Permit permit = admit(userId, timer);
         ThreadLocalUtils.set(ROLE_ID, roleId);
-        SseEmitter emitter = new SseEmitter(-1L);
+        // 连接登记到注册表：心跳、空闲/最长时长限制，客户端断开时中止生成
+        SseStream sseStream = sseStreamRegistry.open();
+        SseEmitter emitter = sseStream.getEmitter();
 
         try {
-            // 1. 获取或创建会话
-            ConversationDO conversation = conversationServiceImpl.getOrCreateConversation(userId, roleId);
-
-            // 2. 获取角色信息
-            RoleDO role = roleMapper.selectById(roleId);
-            if (role == null) {
-                emitter.completeWithError(new RuntimeException("角色不存在"));
-                return emitter;
-            }
+            PreparedTurn turn = prepareTurn(roleId, userId, chatReqDTO, timer);
 
-            // 3. 从角色配置中提取系统提示词
-            String systemPrompt = RoleConfigParser.extractSystemPrompt(role.getAiSetting());
-            log.info("角色[{}]使用系统提示词: {}", role.getName(), systemPrompt);
+            // 4. 同一会话的轮次串行执行，避免并发请求交错读写会话记忆
+            conversationTurnExecutor.submit(turn.conversation.getConversationId(), new ConversationTurnExecutor.Turn() {
+                @Override
+                public void start(Runnable release) {
+                    // 增量内容按时间窗口/字符数合并发送
+                    streamTurn(roleId, userId, turn,
+                        sseWriterFactory.create(turn.conversation.getConversationId(), sseStream),
+                        () -> {
+                            release.run();
+                            permit.release();
+                        });
+                }
 
-            StringBuilder responseBuilder = new StringBuilder();
-            // 使用角色专用的聊天助手，传入角色的系统提示词
-            ChatAssistant assistant = assistantService.getAssistant();
+                @Override
+                public void reject(String reason) {
+                    permit.release();
+                    timer.finish("rejected", 0);
+                    sseStream.completeWithError(new RuntimeException(reason));
+                }
+            });
+
+        } catch (Exception e) {
+            permit.release();
+            timer.finish("error", 0);
+            log.error("聊天服务处理异常", e);
+            sseStream.completeWithError(e);
+        } finally {
+            ThreadLocalUtils.remove(ROLE_ID);
+        }
+
+        return emitter;
+    }
+
+    @Override
+    public Flux<ServerSentEvent<String>> chatFlux(Long roleId, Long userId, ChatReqDTO chatReqDTO, Long lastEventId) {
+        if (lastEventId != null) {
+            // 重连不能重新提问，否则同一条用户消息会写入两次
+            return Flux.error(new RuntimeException(ErrorCode.STREAM_NOT_RESUMABLE.getMessage()));
+        }
+        ChatMetrics.TurnTimer timer = chatMetrics.startTurn(roleId);
+        ChatAdmission.Permit permit = admit(userId, timer);
+        ThreadLocalUtils.set(ROLE_ID, roleId);
+        PreparedTurn turn;
+        try {
+            turn = prepareTurn(roleId, userId, chatReqDTO, timer);
+        } catch (Exception e) {
+            permit.release();
+            timer.finish("error", 0);
+            log.error("聊天服务处理异常", e);
+            return Flux.error(e);
+        } finally {
+            ThreadLocalUtils.remove(ROLE_ID);
+        }
+
+        // 订阅时提交本轮；模型回调直接推进流，连接期间不占用请求线程
+        Flux<String> tokens = Flux.create(sink -> {
+            FluxTokenSink tokenSink = new FluxTokenSink(sink);
+            conversationTurnExecutor.submit(turn.conversation.getConversationId(), new ConversationTurnExecutor.Turn() {
+                @Override
+                public void start(Runnable release) {
+                    streamTurn(roleId, userId, turn, tokenSink, () -> {
+                        release.run();
+                        permit.release();
+                    });
+                }
+
+                @Override
+                public void reject(String reason) {
+                    permit.release();
+                    timer.finish("rejected", 0);
+                    sink.error(new RuntimeException(reason));
+                }
+            });
+        });
+        // 未订阅即断开等未进入本轮的情况同样归还名额
+        tokens = tokens.doFinally(signal -> permit.release());
+        return reactiveSseAdapter.adapt(tokens);
+    }
+
+    /**
+     * 断线重连：不发起新的一轮，补发并继续接收会话最近一轮的回复
+     */
+    private SseEmitter resume(Long roleId, Long userId, long lastEventId) {
+        SseStream sseStream = sseStreamRegistry.open();
+        ConversationDO conversation = conversationServiceImpl.findConversationByUserAndRole(userId, roleId);
+        if (conversation == null || !sseWriterFactory.resume(conversation.getConversationId(), sseStream, lastEventId)) {
+            log.info("回复无法续传: roleId={}, userId={}, lastEventId={}", roleId, userId, lastEventId);
+            sseStream.completeWithError(new RuntimeException(ErrorCode.STREAM_NOT_RESUMABLE.getMessage()));
+        }
+        return sseStream.getEmitter();
+    }
+
+    /**
+     * 申请生成名额，被拒绝时本轮计时以 admission_rejected 结束后继续抛出
+     */
+    private ChatAdmission.Permit admit(Long userId, ChatMetrics.TurnTimer timer) {
+        try {
+            return chatAdmission.admit(userId);
+        } catch (ChatRejectedException e) {
+            timer.finish("admission_rejected", 0);
+            throw e;
+        }
+    }
+
+    /**
+     * 两种推送方式共用：解析会话与角色，附件在请求线程内上传，排队的轮次不再依赖请求中的文件
+     * 建会话与上传附件互不依赖，并发执行并各自限时，任一步失败即取消其余步骤；只有建会话一步时直接在请求线程上执行
+     */
+    private PreparedTurn prepareTurn(Long roleId, Long userId, ChatReqDTO chatReqDTO, ChatMetrics.TurnTimer timer) {
+        // 1. 获取角色配置（内存缓存，已解析）
+        RoleConfig role = roleConfigCache.get(roleId);
+        if (role == null) {
+            throw new RuntimeException("角色不存在");
+        }
+
+        // 2. 角色的系统提示词
+        log.info("角色[{}]使用系统提示词: {}", role.getName(), role.getSystemPrompt());
+
+        try (StageScope scope = stageExecutor.open()) {
+            // 3. 获取或创建会话
+            StageScope.Subtask<ConversationDO> conversation = scope.fork("conversation",
+                prepareConfig.getConversationTimeoutMs(),
+                () -> conversationServiceImpl.getOrCreateConversation(userId, roleId));
 
+            // 4. 上传附件并生成访问链接
             MultipartFile file = chatReqDTO.getFile();
-            TokenStream stream;
+            StageScope.Subtask<UserMessage> multimodalMessage = null;
             if(file != null) {
                 // todo 多模态支持
-                FileUploadDTO fileUploadDTO = fileUploadUtils.upload2Minio(chatReqDTO.getFile(), userId, "/tmp");
-                String imageUrl = fileUploadUtils.getUrlFromMinio(fileUploadDTO.getFileUrl());
-                UserMessage message = UserMessage.from(TextContent.from(chatReqDTO.getMessage()), ImageContent.from(URI.create(imageUrl)));
-                stream = assistant.chat(conversation.getConversationId(), message);
+                multimodalMessage = scope.fork("upload", prepareConfig.getUploadTimeoutMs(), () -> {
+                    FileUploadDTO fileUploadDTO = fileUploadUtils.upload2Minio(file, userId, "/tmp");
+                    String imageUrl = fileUploadUtils.getUrlFromMinio(fileUploadDTO.getFileUrl());
+                    return UserMessage.from(TextContent.from(chatReqDTO.getMessage()), ImageContent.from(URI.create(imageUrl)));
+                });
+            }
+
+            // 5. 查询语义回复缓存（计算问题向量），失败或超时按未命中处理
+            StageScope.Subtask<SemanticCacheProbe> cacheProbe = null;
+            if (file == null && semanticResponseCache.isEnabled()) {
+                cacheProbe = scope.forkOptional("semanticCache", semanticResponseCache.getProbeTimeoutMs(), null,
+                    () -> semanticResponseCache.probe(roleId, userId, chatReqDTO.getMessage()));
+            }
+
+            // 6. 按问题复杂度选择模型档位，超时按主模型处理
+            StageScope.Subtask<ModelTier> tier = null;
+            if (complexityClassifier.isEnabled()) {
+                tier = scope.forkOptional("complexity", complexityClassifier.getClassifyTimeoutMs(), ModelTier.PRIMARY,
+                    () -> complexityClassifier.classify(role, userId, chatReqDTO.getMessage(), file != null));
+            }
+
+            try {
+                scope.join();
+            } finally {
+                log.info("对话前置步骤耗时: {}", scope.timings());
+            }
+            return new PreparedTurn(conversation.get(), chatReqDTO.getMessage(),
+                multimodalMessage == null ? null : multimodalMessage.get(),
+                cacheProbe == null ? null : cacheProbe.get(),
+                tier == null ? ModelTier.PRIMARY : tier.get(), timer);
+        }
+    }
+
+    /**
+     * 执行一轮对话：调用模型并把流式回复写入输出端，模型的结束回调（完成或首次异常）到达时释放本会话的轮次
+     * 排队的轮次在调度线程上执行，需重新设置检索等依赖的线程上下文；
+     * 连接取消（客户端断开、空闲、超时）时通过 {@link ModelCallHandle} 关闭上游响应流中止生成（OpenAI 兼容协议的备用、轻量模型）。
+     * DashScope 主模型没有可中止的调用句柄，取消后的增量直接丢弃，仍等它结束、AI消息写入会话记忆后才释放轮次，
+     * 避免下一轮与仍在写入的生成交错读写会话记忆
+     */
+    private void streamTurn(Long roleId, Long userId, PreparedTurn turn, TokenSink sink, Runnable release) {
+        ConversationDO conversation = turn.conversation;
+        if (sink.isCancelled()) {
+            // 排队期间客户端已断开
+            release.run();
+            turn.timer.finish("cancelled", 0);
+            return;
+        }
+        if (turn.cacheProbe != null && turn.cacheProbe.isHit()) {
+            sink.onCancel(() -> turn.timer.finish("cancelled", 0));
+            replayCachedAnswer(turn, sink, release);
+            return;
+        }
+        ModelCallHandle modelCall = new ModelCallHandle();
+        // 模型的结束回调只处理第一次：中止后SDK仍可能回调，且每个结束回调都会释放轮次
+        AtomicBoolean ended = new AtomicBoolean();
+        sink.onCancel(() -> {
+            turn.timer.finish("cancelled", 0);
+            if (!ended.get()) {
+                log.info("SSE连接已取消，请求中止模型调用: conversationId={}", conversation.getConversationId());
+                modelCall.cancel();
+            }
+        });
+        ThreadLocalUtils.set(ROLE_ID, roleId);
+        ThreadLocalUtils.set(USER_ID, userId);
+        try (ModelCallHandle.Scope ignored = modelCall.bind()) {
+            StringBuilder responseBuilder = new StringBuilder();
+            AtomicBoolean toolUsed = new AtomicBoolean();
+            // 使用角色专用的聊天助手，简单轮次使用角色配置的轻量模型
+            ChatAssistant assistant = assistantService.getAssistant(roleId, turn.tier);
+
+            TokenStream stream;
+            if(turn.multimodalMessage != null) {
+                stream = assistant.chat(conversation.getConversationId(), turn.multimodalMessage);
             }else {
-                stream = assistant.chat(conversation.getConversationId(), chatReqDTO.getMessage());
+                stream = assistant.chat(conversation.getConversationId(), turn.text);
             }
 
+            // 工具调用耗时；调用过工具的回复可能含实时或个人数据，不写入语义缓存
+            stream.beforeToolExecution(before -> {
+                toolUsed.set(true);
+                turn.timer.toolStarted(before.request().id());
+            }).onToolExecuted(execution -> turn.timer.toolFinished(execution.request().id(), execution.request().name()));
             stream.onPartialResponse((data) -> {
-                try {
-                    responseBuilder.append(data);
-                    emitter.send(SseEmitter.event()
-                        .data(data)
-                        .id(String.valueOf(System.currentTimeMillis()))
-                        .name("message")
-                    );
-                } catch (IOException e) {
-                    log.error("发送SSE部分响应失败", e);
-                    emitter.completeWithError(e);
+                if (sink.isCancelled()) {
+                    return;
                 }
+                turn.timer.firstToken();
+                responseBuilder.append(data);
+                sink.write(data);
             }).onCompleteResponse((data) -> {
-                try {
-
+                if (!ended.compareAndSet(false, true)) {
+                    return;
+                }
+                // AI消息已写入会话记忆，下一轮可以开始
+                release.run();
+                if (sink.isCancelled()) {
+                    // 无法中止的模型生成完毕：回复已写入会话记忆，统计照常更新，不写语义缓存
+                    log.info("连接取消后模型生成结束，释放会话: conversationId={}", conversation.getConversationId());
+                    chatCallbackExecutor.execute(() -> {
+                        conversationServiceImpl.updateConversationStats(conversation.getConversationId(), null, null);
+                        compressionService.summarizeAsync(conversation.getConversationId());
+                    });
+                    return;
+                }
+                turn.timer.finish("complete", data.tokenUsage() == null || data.tokenUsage().outputTokenCount() == null
+                    ? 0 : data.tokenUsage().outputTokenCount());
+                chatCallbackExecutor.execute(() -> {
+                    // 7. 不依赖个人上下文的回复写入语义缓存（跨用户共享）
+                    if (turn.cacheProbe != null && !toolUsed.get() && isStandaloneTurn(conversation.getConversationId())) {
+                        semanticResponseCache.put(roleId, turn.cacheProbe, turn.text, responseBuilder.toString());
+                    }
                     // 8. 更新会话统计
                     conversationServiceImpl.updateConversationStats(conversation.getConversationId(), null, null);
-
-                    emitter.send(SseEmitter.event()
-                        .data("[DONE]")
-                        .id(String.valueOf(System.currentTimeMillis()))
-                        .name("done"));
-                    emitter.complete();
-                } catch (IOException e) {
-                    log.error("发送SSE完成响应失败", e);
-                    emitter.completeWithError(e);
-                }
+                    // 9. 本轮超出token预算时，后台生成摘要供下一轮使用
+                    compressionService.summarizeAsync(conversation.getConversationId());
+                });
+                sink.complete();
             }).onError((ex) -> {
-                log.error("AI聊天流处理异常", ex);
-                emitter.completeWithError(ex);
+                if (!ended.compareAndSet(false, true)) {
+                    return;
+                }
+                release.run();
+                turn.timer.finish(sink.isCancelled() ? "cancelled" : "error", 0);
+                if (ex instanceof ModelCallCancelledException) {
+                    log.info("SSE连接已取消，模型生成已中止: conversationId={}", conversation.getConversationId());
+                } else if (sink.isCancelled()) {
+                    log.warn("SSE连接取消后模型调用失败: conversationId={}", conversation.getConversationId(), ex);
+                } else {
+                    log.error("AI聊天流处理异常", ex);
+                }
+                sink.completeWithError(ex);
             }).start();
-
         } catch (Exception e) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            release.run();
+            turn.timer.finish("error", 0);
             log.error("聊天服务处理异常", e);
-            emitter.completeWithError(e);
+            sink.completeWithError(e);
         } finally {
             ThreadLocalUtils.remove(ROLE_ID);
+            ThreadLocalUtils.remove(USER_ID);
         }
+    }
 
-        return emitter;
+    /**
+     * 会话记忆中除本轮的一问一答外没有其他消息，系统提示词中也没有拼接历史摘要
+     */
+    private boolean isStandaloneTurn(String conversationId) {
+        List<ChatMessage> messages = chatMemoryProvider.get(conversationId).messages();
+        int turnMessages = 0;
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                if (CompressionService.hasSummary(systemMessage)) {
+                    return false;
+                }
+                continue;
+            }
+            turnMessages++;
+        }
+        return turnMessages <= 2;
+    }
+
+    /**
+     * 语义缓存命中：问答照常写入会话记忆，缓存的回复一次性写出，不调用模型
+     */
+    private void replayCachedAnswer(PreparedTurn turn, TokenSink sink, Runnable release) {
+        String conversationId = turn.conversation.getConversationId();
+        try {
+            ChatMemory chatMemory = chatMemoryProvider.get(conversationId);
+            chatMemory.add(UserMessage.from(turn.text));
+            chatMemory.add(AiMessage.from(turn.cacheProbe.getAnswer()));
+        } catch (Exception e) {
+            release.run();
+            turn.timer.finish("error", 0);
+            log.error("写入缓存回复到会话记忆失败: conversationId={}", conversationId, e);
+            sink.completeWithError(e);
+            return;
+        }
+        release.run();
+        chatCallbackExecutor.execute(() -> conversationServiceImpl.updateConversationStats(conversationId, null, null));
+        turn.timer.firstToken();
+        sink.write(turn.cacheProbe.getAnswer());
+        turn.timer.finish("cached", 0);
+        sink.complete();
+    }
+
+    /**
+     * 已解析好会话与用户消息、等待执行的一轮对话
+     */
+    @AllArgsConstructor
+    private static class PreparedTurn {
+        private final ConversationDO conversation;
+        private final String text;
+        private final UserMessage multimodalMessage;
+        /** 语义缓存查询结果，未开启或不适用时为null */
+        private final SemanticCacheProbe cacheProbe;
+        /** 本轮使用的模型档位 */
+        private final ModelTier tier;
+        private final ChatMetrics.TurnTimer timer;
     }
 }
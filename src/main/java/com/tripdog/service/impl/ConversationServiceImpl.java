@@ -1,18 +1,21 @@
 package com.tripdog.service.impl;
 
 import com.tripdog.ai.CustomerChatMemoryProvider;
+import com.tripdog.ai.memory.ChatHistoryWriteBehind;
+import com.tripdog.ai.role.RoleConfig;
+import com.tripdog.ai.role.RoleConfigCache;
+import com.tripdog.ai.memory.LocalQwenTokenCountEstimator;
 import com.tripdog.common.Constants;
 import com.tripdog.mapper.ConversationMapper;
 import com.tripdog.mapper.ChatHistoryMapper;
-import com.tripdog.mapper.RoleMapper;
 import com.tripdog.model.entity.ConversationDO;
 import com.tripdog.model.entity.ChatHistoryDO;
-import com.tripdog.model.entity.RoleDO;
 import com.tripdog.model.builder.ConversationBuilder;
 import com.tripdog.service.ConversationService;
 import com.tripdog.service.RoleService;
 
 import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.memory.ChatMemory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -20,7 +23,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 会话服务类
@@ -31,9 +33,11 @@ import java.util.Map;
 public class ConversationServiceImpl implements ConversationService {
     private final ConversationMapper conversationMapper;
     private final ChatHistoryMapper chatHistoryMapper;
-    private final RoleMapper roleMapper;
+    private final RoleConfigCache roleConfigCache;
     private final RoleService roleService;
     private final CustomerChatMemoryProvider chatMemoryProvider;
+    private final ChatHistoryWriteBehind chatHistoryWriteBehind;
+    private final LocalQwenTokenCountEstimator tokenCountEstimator;
 
 
     /**
@@ -72,7 +76,7 @@ public class ConversationServiceImpl implements ConversationService {
      */
     private ConversationDO createNewConversation(Long userId, Long roleId) {
         // 获取角色信息
-        RoleDO role = roleMapper.selectById(roleId);
+        RoleConfig role = roleConfigCache.get(roleId);
         if (role == null) {
             throw new RuntimeException("角色不存在: " + roleId);
         }
@@ -82,8 +86,9 @@ public class ConversationServiceImpl implements ConversationService {
         conversationMapper.insert(conversation);
 
         // 设置系统提示词 todo 解耦
-        String systemPrompt = roleService.getSystemPrompt(roleId);
+        String systemPrompt = role.getSystemPrompt();
         ChatHistoryDO chatHistory = ConversationBuilder.buildSystemMessage(conversation.getConversationId(), systemPrompt);
+        chatHistory.setInputTokens(tokenCountEstimator.estimateTokenCountInText(systemPrompt));
         chatHistoryMapper.insert(chatHistory);
 
         return conversation;
@@ -95,14 +100,18 @@ public class ConversationServiceImpl implements ConversationService {
     @Override
     @Transactional
     public void resetConversationContext(String conversationId) {
-        Map<String, ChatMemory> chatMemoryMap = chatMemoryProvider.getChatMemoryMap();
-        ChatMemory chatMemory = chatMemoryMap.get(conversationId);
-        ChatMessage systemMessage = chatMemory.messages().removeFirst();
+        ConversationDO existingConversation = conversationMapper.selectByConversationId(conversationId);
+        ChatMemory chatMemory = chatMemoryProvider.get(conversationId);
+        // 上下文中的系统消息可能已拼接历史摘要，重置时按角色重新获取原始提示词
+        ChatMessage systemMessage = existingConversation != null
+            ? SystemMessage.from(roleService.getSystemPrompt(existingConversation.getRoleId()))
+            : chatMemory.messages().removeFirst();
         chatMemory.clear();
         chatMemory.add(systemMessage);
+        // 下次对话按角色最新配置重建记忆实例（token预算随 max_tokens 变化）
+        chatMemoryProvider.evict(conversationId);
 
-        // 更新会话信息 - 根据conversationId查找会话
-        ConversationDO existingConversation = conversationMapper.selectByConversationId(conversationId);
+        // 更新会话信息
         if (existingConversation != null) {
             existingConversation.setUpdatedAt(LocalDateTime.now());
             conversationMapper.updateById(existingConversation);
@@ -114,6 +123,9 @@ public class ConversationServiceImpl implements ConversationService {
      */
     @Override
     public List<ChatHistoryDO> getContextMessages(String conversationId, Integer limit) {
+        // 写出尚未落库的消息，保证历史记录完整
+        chatHistoryWriteBehind.flush();
+
         // 获取所有消息
         ChatHistoryDO queryParam = new ChatHistoryDO();
         queryParam.setConversationId(conversationId);
@@ -1,5 +1,6 @@
 package com.tripdog.service.impl;
 
+import com.tripdog.ai.embedding.DocCountCache;
 import com.tripdog.mapper.DocMapper;
 import com.tripdog.model.entity.DocDO;
 import com.tripdog.model.vo.DocVO;
@@ -19,10 +20,13 @@ import java.util.stream.Collectors;
 public class DocServiceImpl implements DocService {
 
     private final DocMapper docMapper;
+    private final DocCountCache docCountCache;
 
     @Override
     public boolean saveDoc(DocDO doc) {
-        return docMapper.insert(doc) > 0;
+        boolean saved = docMapper.insert(doc) > 0;
+        docCountCache.invalidate(doc.getUserId(), doc.getRoleId());
+        return saved;
     }
 
     @Override
@@ -55,7 +59,12 @@ public class DocServiceImpl implements DocService {
 
     @Override
     public boolean deleteDoc(String fileId) {
-        return docMapper.deleteByFileId(fileId) > 0;
+        DocDO doc = docMapper.selectByFileId(fileId);
+        boolean deleted = docMapper.deleteByFileId(fileId) > 0;
+        if (doc != null) {
+            docCountCache.invalidate(doc.getUserId(), doc.getRoleId());
+        }
+        return deleted;
     }
 
     /**
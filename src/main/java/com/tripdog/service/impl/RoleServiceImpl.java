@@ -4,6 +4,8 @@ import java.util.List;
 
 import org.springframework.stereotype.Service;
 
+import com.tripdog.ai.role.RoleConfig;
+import com.tripdog.ai.role.RoleConfigCache;
 import com.tripdog.mapper.RoleMapper;
 import com.tripdog.model.converter.RoleConverter;
 import com.tripdog.model.entity.RoleDO;
@@ -23,6 +25,7 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class RoleServiceImpl implements RoleService {
     final RoleMapper roleMapper;
+    final RoleConfigCache roleConfigCache;
 
     @Override
     public List<RoleInfoVO> getRoleInfoList() {
@@ -50,11 +53,11 @@ public class RoleServiceImpl implements RoleService {
 
     @Override
     public String getSystemPrompt(Long roleId) {
-        RoleDO roleDO = roleMapper.selectById(roleId);
-        if (roleDO == null) {
+        RoleConfig roleConfig = roleConfigCache.get(roleId);
+        if (roleConfig == null) {
             return RoleConfigParser.extractSystemPrompt(null);
         }
-        return RoleConfigParser.extractSystemPrompt(roleDO.getAiSetting());
+        return roleConfig.getSystemPrompt();
     }
 
     /**